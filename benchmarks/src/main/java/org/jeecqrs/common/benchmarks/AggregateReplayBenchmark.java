@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.jeecqrs.common.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jeecqrs.common.domain.model.DomainEvent;
+import org.jeecqrs.common.event.sourcing.EventSourcingUtil;
+import org.jeecqrs.common.event.sourcing.InstanceFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replays event streams of different lengths into fresh aggregates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregateReplayBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int events;
+
+    private List<DomainEvent> stream;
+    private InstanceFactory<BenchmarkAggregate> factory;
+
+    @Setup
+    public void setup() {
+        BenchmarkAggregate template = new BenchmarkAggregate(new BenchmarkId("replay"));
+        for (int i = 1; i < events; i++)
+            template.add(i);
+        stream = new ArrayList<>(events);
+        EventSourcingUtil.transferChanges(template, stream);
+        factory = EventSourcingUtil.instanceFactoryFor(BenchmarkAggregate.class);
+    }
+
+    @Benchmark
+    public BenchmarkAggregate replay() {
+        BenchmarkAggregate obj = factory.newInstance();
+        EventSourcingUtil.loadEventStreamIntoObject(obj, 1, stream.iterator());
+        return obj;
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.jeecqrs.common.benchmarks;
+
+import org.jeecqrs.common.domain.model.AbstractDomainEvent;
+import org.jeecqrs.common.domain.model.AbstractEventSourcedAggregateRoot;
+
+/**
+ * A minimal event sourced aggregate for the benchmarks.
+ */
+public class BenchmarkAggregate extends AbstractEventSourcedAggregateRoot<BenchmarkAggregate, BenchmarkId> {
+
+    private BenchmarkId id;
+    private long total;
+
+    // required for loading
+    private BenchmarkAggregate() { }
+
+    public BenchmarkAggregate(BenchmarkId id) {
+        apply(new Created(id));
+    }
+
+    public void add(int amount) {
+        apply(new Added(amount));
+    }
+
+    public long total() {
+        return total;
+    }
+
+    @Override
+    public BenchmarkId id() {
+        return id;
+    }
+
+    protected void when(Created event) {
+        this.id = event.id;
+    }
+
+    protected void when(Added event) {
+        this.total += event.amount;
+    }
+
+    public static class Created extends AbstractDomainEvent<Created> {
+        final BenchmarkId id;
+        public Created(BenchmarkId id) {
+            this.id = id;
+        }
+    }
+
+    public static class Added extends AbstractDomainEvent<Added> {
+        final int amount;
+        public Added(int amount) {
+            this.amount = amount;
+        }
+    }
+
+}
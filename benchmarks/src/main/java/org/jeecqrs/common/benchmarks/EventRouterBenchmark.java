@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.jeecqrs.common.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.jeecqrs.common.event.Event;
+import org.jeecqrs.common.event.routing.convention.ConventionEventRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Routes events to convention handlers: warm, i.e., through a router that
+ * has been registered before, per new router as created for each
+ * aggregate and saga, and the very first routing in a fresh JVM.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventRouterBenchmark {
+
+    private ConventionEventRouter<Void, Event> router;
+    private Target target;
+    private Event event;
+
+    @Setup
+    public void setup() {
+        target = new Target();
+        router = new ConventionEventRouter<>(true, "when");
+        router.register(target);
+        event = new BenchmarkSaga.Ping();
+    }
+
+    @Benchmark
+    public Void routeWarm() {
+        return router.routeEvent(event);
+    }
+
+    @Benchmark
+    public Void routeNewRouter() {
+        ConventionEventRouter<Void, Event> r = new ConventionEventRouter<>(true, "when");
+        r.register(target);
+        return r.routeEvent(event);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public Void routeCold() {
+        // a class not routed to before within this fork
+        ConventionEventRouter<Void, Event> r = new ConventionEventRouter<>(true, "when");
+        r.register(new ColdTarget());
+        return r.routeEvent(event);
+    }
+
+    public static class Target {
+        long count;
+        protected void when(BenchmarkSaga.Ping event) {
+            count++;
+        }
+    }
+
+    public static class ColdTarget {
+        long count;
+        protected void when(BenchmarkSaga.Ping event) {
+            count++;
+        }
+    }
+
+}
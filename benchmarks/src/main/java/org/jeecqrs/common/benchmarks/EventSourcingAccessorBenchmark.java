@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.jeecqrs.common.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jeecqrs.common.event.Event;
+import org.jeecqrs.common.event.sourcing.EventSourcingAccessor;
+import org.jeecqrs.common.event.sourcing.EventSourcingBus;
+import org.jeecqrs.common.event.sourcing.EventSourcingUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Calls the event sourcing methods of an aggregate through
+ * {@link EventSourcingUtil}, as the repositories do on each load and save.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventSourcingAccessorBenchmark {
+
+    private BenchmarkAggregate aggregate;
+    private EventSourcingBus<Event> bus;
+
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        aggregate = new BenchmarkAggregate(new BenchmarkId("accessor"));
+        bus = new EventSourcingBus<Event>() {
+            @Override
+            public void store(Event event) {
+                blackhole.consume(event);
+            }
+            @Override
+            public void storeAll(List<? extends Event> events) {
+                blackhole.consume(events);
+            }
+            @Override
+            public void commit(String commitId) { }
+        };
+    }
+
+    @Benchmark
+    public EventSourcingAccessor accessorFor() {
+        return EventSourcingUtil.accessorFor(BenchmarkAggregate.class);
+    }
+
+    @Benchmark
+    public long retrieveVersion() {
+        return EventSourcingUtil.retrieveVersion(aggregate);
+    }
+
+    @Benchmark
+    public BenchmarkAggregate newInstance() {
+        return EventSourcingUtil.instanceFactoryFor(BenchmarkAggregate.class).newInstance();
+    }
+
+    @Benchmark
+    public long store() {
+        aggregate.add(1);
+        EventSourcingUtil.invokeStoreMethod(aggregate, bus);
+        return EventSourcingUtil.retrieveVersion(aggregate);
+    }
+
+}
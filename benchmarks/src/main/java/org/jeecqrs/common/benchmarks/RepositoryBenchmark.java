@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.jeecqrs.common.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.jeecqrs.common.persistence.jeeventstore.inmemory.InMemoryEventStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loads and saves an aggregate through the JEEventStore repository,
+ * backed by the in-memory event store.  The aggregate starts with the
+ * given number of events.  Since each save adds an event, the load/save
+ * cycle is measured in batches of {@value #CYCLES} cycles on a stream that
+ * is reset before each batch, and its score is the time per batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    static final int CYCLES = 100;
+
+    @Param({"10", "1000"})
+    private int events;
+
+    private BenchmarkRepository repository;
+    private BenchmarkId id;
+    private long commits;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        repository = new BenchmarkRepository(new InMemoryEventStore());
+        id = new BenchmarkId();
+        BenchmarkAggregate aggregate = new BenchmarkAggregate(id);
+        for (int i = 1; i < events; i++)
+            aggregate.add(1);
+        repository.add(aggregate, "setup");
+    }
+
+    @Benchmark
+    public BenchmarkAggregate load() {
+        return repository.ofIdentity(id);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 10, batchSize = CYCLES)
+    @Measurement(iterations = 20, batchSize = CYCLES)
+    public BenchmarkAggregate loadAndSave() {
+        BenchmarkAggregate aggregate = repository.ofIdentity(id);
+        aggregate.add(1);
+        repository.save(aggregate, Long.toString(commits++));
+        return aggregate;
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.jeecqrs.common.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Handles events in a saga, both events seen for the first time and
+ * duplicates that are discarded by the deduplication.
+ * Each invocation handles a batch of events, the new events with a fresh
+ * saga, so the reported times are per event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SagaBenchmark {
+
+    private static final int BATCH = 64;
+
+    private final BenchmarkSaga.Ping[] events = new BenchmarkSaga.Ping[BATCH];
+    private BenchmarkSaga handled;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < BATCH; i++)
+            events[i] = new BenchmarkSaga.Ping();
+        handled = new BenchmarkSaga();
+        for (BenchmarkSaga.Ping event : events)
+            handled.handle(event);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long handleNew() {
+        BenchmarkSaga saga = new BenchmarkSaga();
+        for (BenchmarkSaga.Ping event : events)
+            saga.handle(event);
+        return saga.pings();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long handleDuplicate() {
+        for (BenchmarkSaga.Ping event : events)
+            handled.handle(event);
+        return handled.pings();
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.jeecqrs.common.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.jeecqrs.common.persistence.es.CanonicalNameEventStreamNameGenerator;
+import org.jeecqrs.common.persistence.es.EventStreamNameGenerator;
+import org.jeecqrs.common.persistence.jeeventstore.MultiTenancyCanonicalNameESNG;
+import org.jeecqrs.common.persistence.jeeventstore.MultiTenancyId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generates stream names, as done on every load and save.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamNameBenchmark {
+
+    private final EventStreamNameGenerator<BenchmarkAggregate, BenchmarkId> single =
+            new CanonicalNameEventStreamNameGenerator<>();
+    private final EventStreamNameGenerator<BenchmarkTenantAggregate, MultiTenancyId<BenchmarkId, BenchmarkId>> multi =
+            new MultiTenancyCanonicalNameESNG<>();
+
+    private BenchmarkId id;
+    private BenchmarkTenantAggregate tenantAggregate;
+    private MultiTenancyId<BenchmarkId, BenchmarkId> tenantId;
+
+    @Setup
+    public void setup() {
+        id = new BenchmarkId();
+        BenchmarkId tenant = new BenchmarkId("tenant");
+        tenantAggregate = new BenchmarkTenantAggregate(tenant, id);
+        tenantId = new MultiTenancyId<>(tenant, id);
+    }
+
+    @Benchmark
+    public String singleTenant() {
+        return single.streamNameFor(BenchmarkAggregate.class, id);
+    }
+
+    @Benchmark
+    public String multiTenantById() {
+        return multi.streamNameFor(BenchmarkTenantAggregate.class, tenantId);
+    }
+
+    @Benchmark
+    public String multiTenantByObject() {
+        return multi.streamNameFor(tenantAggregate);
+    }
+
+}
@@ -25,6 +25,7 @@ import org.jeecqrs.common.Identity;
 import org.jeecqrs.common.event.routing.EndpointNotFoundException;
 import org.jeecqrs.common.event.routing.EventRouter;
 import org.jeecqrs.common.event.routing.convention.ConventionEventRouter;
+import org.jeecqrs.common.event.sourcing.CatchUp;
 import org.jeecqrs.common.event.sourcing.EventSourcingBus;
 import org.jeecqrs.common.event.sourcing.Load;
 import org.jeecqrs.common.event.sourcing.Store;
@@ -32,6 +33,7 @@ import org.jeecqrs.common.event.sourcing.Version;
 import org.jeecqrs.common.util.Validate;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -55,6 +57,9 @@ import java.util.List;
  * Subsequent changes to the aggregate are stored internally.  To persist
  * any changes, the event store repository calls the internal {@link #store}
  * method.
+ * <p>
+ * Aggregates that support snapshots extend
+ * {@link AbstractSnapshottingAggregateRoot} instead.
  */
 public abstract class AbstractEventSourcedAggregateRoot<T, ID extends Identity>
         extends AbstractAggregateRoot<T, ID> {
@@ -62,9 +67,11 @@ public abstract class AbstractEventSourcedAggregateRoot<T, ID extends Identity>
     private static final String EVENT_HANDLER_NAME = "when";
 
     // the list of events that change the state of the aggregate relative to {@code version}
-    private final List<DomainEvent> changes = new ArrayList<>();
+    private List<DomainEvent> changes = new ArrayList<>();
     // the persisted version this object is based on, used for optimistic concurrency
     private long version = 0l;
+    // the number of persisted events this object is based on
+    private long eventCount = 0l;
     private EventRouter<Void, DomainEvent> eventRouter;
 
     public AbstractEventSourcedAggregateRoot() {
@@ -100,16 +107,66 @@ public abstract class AbstractEventSourcedAggregateRoot<T, ID extends Identity>
     }
 
     /**
-     * Loads a version of the aggregate root from a list of DomainEvents. 
+     * Loads a version of the aggregate root from a stream of DomainEvents,
+     * applying each event as it is read. 
      */
     @Load
-    private void load(long version, List<DomainEvent> events) {
+    private void load(long version, Iterator<DomainEvent> events) {
         Validate.isTrue(this.version == 0l, "Cannot loadFromEventStream() on dirty AggregateRoot");
-        for (DomainEvent event : events)
-            this.invokeHandler(event);
+        this.replay(events);
+        this.version = version;
+    }
+
+    /**
+     * Brings the aggregate root up to a newer version of its event stream.
+     * Skips the events that have already been applied and applies the rest.
+     */
+    @CatchUp
+    private void catchUp(long version, Iterator<DomainEvent> events) {
+        Validate.isTrue(this.changes.isEmpty(), "Cannot catch up AggregateRoot with unsaved changes");
+        if (version < this.version)
+            throw new IllegalStateException("Stream version " + version +
+                    " is behind AggregateRoot version " + this.version);
+        if (version == this.version)
+            return;
+        for (long i = 0; i < this.eventCount; i++) {
+            if (!events.hasNext())
+                throw new IllegalStateException("Stream has fewer events than already applied: " + i);
+            events.next();
+        }
+        this.replay(events);
+        this.version = version;
+    }
+
+    private void replay(Iterator<DomainEvent> events) {
+        while (events.hasNext()) {
+            this.invokeHandler(events.next());
+            this.eventCount++;
+        }
+    }
+
+    /**
+     * Sets the number of events covered by a snapshot and replays the events
+     * that follow it.  Used by {@link AbstractSnapshottingAggregateRoot}.
+     */
+    final void replayAfterSnapshot(long eventCount, long version, Iterator<DomainEvent> events) {
+        this.eventCount = eventCount;
+        this.replay(events);
         this.version = version;
     }
 
+    final boolean hasChanges() {
+        return !this.changes.isEmpty();
+    }
+
+    final long persistedVersion() {
+        return this.version;
+    }
+
+    final long persistedEventCount() {
+        return this.eventCount;
+    }
+
     /**
      * Stores the changes made to the aggregate root to the given event bus.
      * Also increases the version number
@@ -118,9 +175,11 @@ public abstract class AbstractEventSourcedAggregateRoot<T, ID extends Identity>
      */
     @Store
     private void store(EventSourcingBus<DomainEvent> eventBus) {
-        for (DomainEvent event : this.changes)
-            eventBus.store(event);
-        this.changes.clear();
+        // hand the list over instead of copying it, the bus may keep it
+        List<DomainEvent> stored = this.changes;
+        eventBus.storeAll(stored);
+        this.changes = new ArrayList<>();
+        this.eventCount += stored.size();
         this.version++;
     }
 
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.domain.model;
+
+import org.jeecqrs.common.Identity;
+import org.jeecqrs.common.event.routing.EventRouter;
+import org.jeecqrs.common.event.sourcing.CaptureSnapshot;
+import org.jeecqrs.common.event.sourcing.RestoreSnapshot;
+import org.jeecqrs.common.event.sourcing.Snapshot;
+import org.jeecqrs.common.event.sourcing.SnapshotPolicy;
+import org.jeecqrs.common.util.Validate;
+
+import java.io.Serializable;
+import java.util.Iterator;
+
+/**
+ * An {@link AbstractEventSourcedAggregateRoot} that supports snapshots.
+ * Subclasses provide the snapshot state with {@link #snapshotState()} and
+ * restore it with {@link #restoreSnapshotState(Serializable)}.  The
+ * repository then restores the aggregate from the newest snapshot and
+ * replays only the events that follow it.
+ * <p>
+ * Plain event sourced aggregate roots do not support snapshots at all,
+ * such that a snapshot can never be taken of an aggregate that cannot
+ * restore it.
+ */
+public abstract class AbstractSnapshottingAggregateRoot<T, ID extends Identity>
+        extends AbstractEventSourcedAggregateRoot<T, ID> {
+
+    // the number of events and the time of the last snapshot
+    private long snapshotEventCount = 0l;
+    private long snapshotTakenOn = 0l;
+
+    public AbstractSnapshottingAggregateRoot() {
+        super();
+    }
+
+    public AbstractSnapshottingAggregateRoot(EventRouter<Void, DomainEvent> eventRouter) {
+        super(eventRouter);
+    }
+
+    /**
+     * Provides the state of the aggregate root for a snapshot.
+     * The state must be a detached copy, such that later changes to the
+     * aggregate do not change the snapshot.
+     * 
+     * @return the state, or {@code null} to skip this snapshot
+     */
+    protected abstract Serializable snapshotState();
+
+    /**
+     * Restores the state of the aggregate root from a snapshot.
+     * 
+     * @param state  the state as provided by {@link #snapshotState()}
+     */
+    protected abstract void restoreSnapshotState(Serializable state);
+
+    /**
+     * Restores a version of the aggregate root from a snapshot and the
+     * stream of DomainEvents that follow it.
+     */
+    @RestoreSnapshot
+    private void restoreSnapshot(Snapshot snapshot, long version, Iterator<DomainEvent> events) {
+        Validate.isTrue(this.persistedVersion() == 0l, "Cannot restore snapshot on dirty AggregateRoot");
+        this.restoreSnapshotState(snapshot.state());
+        this.snapshotEventCount = snapshot.eventCount();
+        this.snapshotTakenOn = snapshot.takenOn();
+        this.replayAfterSnapshot(snapshot.eventCount(), version, events);
+    }
+
+    /**
+     * Captures a snapshot of the persisted state, if the policy asks for one.
+     * Returns {@code null} if there are unsaved changes or the subclass does
+     * not provide snapshot state.
+     */
+    @CaptureSnapshot
+    private Snapshot captureSnapshot(SnapshotPolicy policy) {
+        if (this.hasChanges())
+            return null;
+        long eventCount = this.persistedEventCount();
+        if (!policy.shouldSnapshot(eventCount - this.snapshotEventCount, this.snapshotTakenOn))
+            return null;
+        Serializable state = this.snapshotState();
+        if (state == null)
+            return null;
+        Snapshot snapshot = new Snapshot(this.persistedVersion(), eventCount, state);
+        this.snapshotEventCount = snapshot.eventCount();
+        this.snapshotTakenOn = snapshot.takenOn();
+        return snapshot;
+    }
+
+}
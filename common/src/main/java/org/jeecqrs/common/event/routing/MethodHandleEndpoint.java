@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.event.routing;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import org.jeecqrs.common.event.Event;
+
+/**
+ * Event route endpoint that invokes the endpoint method through a
+ * {@link MethodHandle} instead of {@link Method#invoke}.
+ * The handle is bound to the target object once, such that an invocation
+ * does neither require access checks nor an argument array.
+ * 
+ * @param <R>  the return type
+ * @param <E>  the base event class
+ */
+public class MethodHandleEndpoint<R, E extends Event> implements EventRouteEndpoint<R, E> {
+
+    private static final MethodType ENDPOINT_TYPE = MethodType.methodType(Object.class, Event.class);
+
+    private final Object object;
+    private final Method method;
+    private final MethodHandle handle;
+
+    public MethodHandleEndpoint(Object object, Method method) {
+        this.object = object;
+        this.method = method;
+        this.handle = bind(unreflect(method), object, method).asType(ENDPOINT_TYPE);
+    }
+
+    @Override
+    public R consumeEvent(E event) {
+        try {
+            return (R) (Object) handle.invokeExact((Event) event);
+        } catch (Throwable t) {
+            throw new RuntimeException("Invocation of endpoint method "
+                    + method + " on object "+ object + " failed: " + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Creates a method handle for the given method.
+     * Access checks are skipped if the method has been made accessible.
+     * 
+     * @param method  the method
+     * @return  the method handle
+     */
+    public static MethodHandle unreflect(Method method) {
+        try {
+            return MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access endpoint method " + method
+                    + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static MethodHandle bind(MethodHandle mh, Object object, Method method) {
+        if (Modifier.isStatic(method.getModifiers()))
+            return mh;
+        return mh.bindTo(object);
+    }
+    
+}
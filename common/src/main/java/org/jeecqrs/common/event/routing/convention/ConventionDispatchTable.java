@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.event.routing.convention;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jeecqrs.common.event.Event;
+import org.jeecqrs.common.event.routing.MethodHandleEndpoint;
+import org.jeecqrs.common.util.GeneratedClasses;
+import org.jeecqrs.common.util.Validate;
+
+/**
+ * Immutable table of the event handler methods of a class that follow the
+ * {@link ConventionEventRouter} naming convention.
+ * The table is computed once per class and handler method name and is
+ * shared by all routers that are registered with instances of that class.
+ * Tables are kept in a {@link ClassValue}, such that looking up an existing
+ * table requires neither locking nor building a string key, and tables
+ * do not prevent their classes from being unloaded.
+ * <p>
+ * If the {@code jcommondomain-processor} annotation processor generated a
+ * {@link ConventionDispatcher} for the class and handler method name, the
+ * table invokes the handlers through the generated dispatcher instead of
+ * invoking them reflectively.  The generated dispatcher is only used if it
+ * covers exactly the handlers found on the class at runtime; a dispatcher
+ * that is out of date with its class, e.g., because the class has been
+ * recompiled without the annotation processor, is ignored with a warning.
+ */
+public final class ConventionDispatchTable {
+
+    private final static Logger log = Logger.getLogger(ConventionDispatchTable.class.getCanonicalName());
+
+    private static final ClassValue<ConcurrentMap<String, ConventionDispatchTable>> tables =
+            new ClassValue<ConcurrentMap<String, ConventionDispatchTable>>() {
+        @Override
+        protected ConcurrentMap<String, ConventionDispatchTable> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>(2);
+        }
+    };
+
+    /**
+     * Marks event types for which a class provides no usable handler.
+     */
+    public static final Handler NO_HANDLER = new Handler();
+
+    private final Class<?> targetType;
+    private final String methodName;
+    // includes NO_HANDLER entries for event types with hidden handlers
+    private final Map<Class<?>, Handler> handlers;
+    private final Set<Class<?>> handledEventTypes;
+    private final Set<Class<?>> hiddenEventTypes;
+    // memoized resolution results per concrete event type, including misses
+    private final ConcurrentMap<Class<?>, Handler> resolved;
+
+    private ConventionDispatchTable(Class<?> targetType, String methodName) {
+        this.targetType = targetType;
+        this.methodName = methodName;
+        Map<Class<?>, Method> methods = scan(targetType, methodName);
+        ConventionDispatcher generated = GeneratedClasses.instanceFor(targetType, ConventionDispatcher.class);
+        if (generated != null && methodName.equals(generated.methodName())
+                && isUpToDate(generated, methods, targetType))
+            this.handlers = fromDispatcher(generated);
+        else
+            this.handlers = fromMethods(methods);
+        Set<Class<?>> handled = new HashSet<>();
+        Set<Class<?>> hidden = new HashSet<>();
+        for (Map.Entry<Class<?>, Handler> e : handlers.entrySet()) {
+            if (e.getValue() != NO_HANDLER)
+                handled.add(e.getKey());
+            else
+                hidden.add(e.getKey());
+        }
+        this.handledEventTypes = Collections.unmodifiableSet(handled);
+        this.hiddenEventTypes = Collections.unmodifiableSet(hidden);
+        this.resolved = new ConcurrentHashMap<>(handlers);
+    }
+
+    /**
+     * Gets the dispatch table for the given class and handler method name.
+     * 
+     * @param targetType  the class that declares or inherits the handler methods, not null
+     * @param methodName  the name of the handler methods, not null
+     * @return  the shared dispatch table
+     */
+    public static ConventionDispatchTable forClass(Class<?> targetType, String methodName) {
+        Validate.notNull(targetType, "targetType must not be null");
+        Validate.notNull(methodName, "methodName must not be null");
+        ConcurrentMap<String, ConventionDispatchTable> byName = tables.get(targetType);
+        ConventionDispatchTable table = byName.get(methodName);
+        if (table == null) {
+            // concurrent scans yield equal tables, keep whichever comes first
+            ConventionDispatchTable created = new ConventionDispatchTable(targetType, methodName);
+            table = byName.putIfAbsent(methodName, created);
+            if (table == null)
+                table = created;
+        }
+        return table;
+    }
+
+    /**
+     * Gets the most specific handler for events of the given type.
+     * A handler matches if its parameter type is the event type itself or
+     * one of its super classes or interfaces.  A hidden handler counts as a
+     * match, too, such that its event type and all of its subtypes get no
+     * handler rather than a handler of a less specific event type, just like
+     * the event type itself.  The result is memoized per
+     * event type, including the answer {@link #NO_HANDLER} for event types
+     * without a handler, such that only the first event of each concrete
+     * type needs to resolve its handler.
+     * 
+     * @param eventType  the event type
+     * @return  the handler or {@link #NO_HANDLER} if the class provides no handler
+     * @throws IllegalStateException  if several handlers match and none is more specific
+     */
+    public Handler handlerFor(Class<?> eventType) {
+        Handler h = resolved.get(eventType);
+        if (h == null) {
+            h = resolve(eventType);
+            resolved.putIfAbsent(eventType, h);
+        }
+        return h;
+    }
+
+    private Handler resolve(Class<?> eventType) {
+        Class<?> best = null;
+        for (Class<?> candidate : handlers.keySet())
+            if (candidate.isAssignableFrom(eventType)
+                    && (best == null || best.isAssignableFrom(candidate)))
+                best = candidate;
+        if (best == null)
+            return NO_HANDLER;
+        // every other matching handler must accept a super type of best
+        if (!isMostSpecific(best, eventType))
+            throw new IllegalStateException(String.format(
+                    "Ambiguous %s handlers in %s for event of type %s",
+                    methodName, targetType.getName(), eventType.getName()));
+        return handlers.get(best);
+    }
+
+    private boolean isMostSpecific(Class<?> best, Class<?> eventType) {
+        for (Class<?> candidate : handlers.keySet())
+            if (candidate != best && candidate.isAssignableFrom(eventType)
+                    && !candidate.isAssignableFrom(best))
+                return false;
+        return true;
+    }
+
+    /**
+     * Gets the event types for which the class provides a handler.
+     * 
+     * @return  the unmodifiable set of handled event types
+     */
+    public Set<Class<?>> handledEventTypes() {
+        return handledEventTypes;
+    }
+
+    /**
+     * Gets the event types for which the class declares a handler method
+     * that is ignored because it is neither public nor protected.
+     * 
+     * @return  the unmodifiable set of event types with hidden handlers
+     */
+    public Set<Class<?>> hiddenEventTypes() {
+        return hiddenEventTypes;
+    }
+
+    public Class<?> targetType() {
+        return targetType;
+    }
+
+    public String methodName() {
+        return methodName;
+    }
+
+    /**
+     * Finds the handler methods, mapping event types with hidden handlers
+     * to {@code null}.
+     */
+    private static Map<Class<?>, Method> scan(Class<?> targetType, String methodName) {
+        Map<Class<?>, Method> found = new HashMap<>();
+        for (Class<?> type = targetType; type != null; type = type.getSuperclass()) {
+            for (Method m : type.getDeclaredMethods()) {
+                if (!isHandlerCandidate(m, methodName))
+                    continue;
+                Class<?> eventType = m.getParameterTypes()[0];
+                if (found.containsKey(eventType))
+                    continue;
+                int mods = m.getModifiers();
+                /* Do not use default (package only) or private methods.  If this
+                 * method is neither public nor protected, no super class can have 
+                 * a method with the same name but with higher visibility.
+                 */
+                if (!Modifier.isPublic(mods) && !Modifier.isProtected(mods)) {
+                    found.put(eventType, null);
+                    continue;
+                }
+                found.put(eventType, m);
+            }
+        }
+        return found;
+    }
+
+    private static Map<Class<?>, Handler> fromMethods(Map<Class<?>, Method> methods) {
+        Map<Class<?>, Handler> found = new HashMap<>();
+        for (Map.Entry<Class<?>, Method> e : methods.entrySet()) {
+            Method m = e.getValue();
+            if (m == null) {
+                found.put(e.getKey(), NO_HANDLER);
+                continue;
+            }
+            m.setAccessible(true);
+            found.put(e.getKey(), new Handler(m));
+        }
+        return Collections.unmodifiableMap(found);
+    }
+
+    /**
+     * The annotation processor does not generate dispatchers for classes
+     * with hidden handlers, so a generated dispatcher is up to date if it
+     * dispatches to exactly the handlers found by {@link #scan}.
+     */
+    private static boolean isUpToDate(ConventionDispatcher dispatcher,
+            Map<Class<?>, Method> methods, Class<?> targetType) {
+        Set<Class<?>> generated = new HashSet<>(Arrays.asList(dispatcher.eventTypes()));
+        if (generated.equals(methods.keySet()) && !methods.containsValue(null))
+            return true;
+        log.log(Level.WARNING, "Ignoring out of date generated dispatcher {0} for {1}: "
+                + "handles {2}, but the class handles {3}", new Object[]{
+                    dispatcher.getClass().getName(), targetType.getName(),
+                    generated, methods.keySet()});
+        return false;
+    }
+
+    private static Map<Class<?>, Handler> fromDispatcher(ConventionDispatcher dispatcher) {
+        Map<Class<?>, Handler> found = new HashMap<>();
+        Class<?>[] eventTypes = dispatcher.eventTypes();
+        for (int i = 0; i < eventTypes.length; i++)
+            found.put(eventTypes[i], new Handler(dispatcher, i, eventTypes[i]));
+        return Collections.unmodifiableMap(found);
+    }
+
+    private static boolean isHandlerCandidate(Method m, String methodName) {
+        if (!methodName.equals(m.getName()) || m.isBridge() || m.isSynthetic())
+            return false;
+        Class<?>[] params = m.getParameterTypes();
+        return params.length == 1 && Event.class.isAssignableFrom(params[0]);
+    }
+
+    @Override
+    public String toString() {
+        return "ConventionDispatchTable[" + targetType.getName() + "#" + methodName
+                + ", " + handledEventTypes.size() + " handlers]";
+    }
+
+    /**
+     * An event handler method that is not bound to a specific object.
+     * The method is invoked through a {@link MethodHandle} of type
+     * {@code (Object, Event)Object}, which either calls the method directly
+     * or through a generated {@link ConventionDispatcher}, and avoids the
+     * access checks and argument arrays of reflective invocation.
+     * <p>
+     * Handlers are not turned into functional interfaces through the
+     * {@code LambdaMetafactory}, although the library requires Java 8: the
+     * handler methods are usually protected or private methods of
+     * application classes, and the generated lambda classes cannot call
+     * them without a lookup that has private access to each of those
+     * classes, which Java 8 offers no way to obtain.
+     */
+    public static final class Handler {
+
+        private static final MethodType HANDLER_TYPE =
+                MethodType.methodType(Object.class, Object.class, Event.class);
+        private static final MethodType DISPATCH_TYPE =
+                MethodType.methodType(Object.class, Object.class, int.class, Event.class);
+
+        private final Method method;
+        private final MethodHandle handle;
+        private final String description;
+
+        private Handler() {
+            this.method = null;
+            this.handle = null;
+            this.description = "none";
+        }
+
+        Handler(Method method) {
+            this.method = method;
+            MethodHandle mh = MethodHandleEndpoint.unreflect(method);
+            if (Modifier.isStatic(method.getModifiers()))
+                mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            this.handle = mh.asType(HANDLER_TYPE);
+            this.description = method.toString();
+        }
+
+        Handler(ConventionDispatcher dispatcher, int index, Class<?> eventType) {
+            this.method = null;
+            try {
+                MethodHandle mh = MethodHandles.lookup()
+                        .findVirtual(ConventionDispatcher.class, "dispatch", DISPATCH_TYPE)
+                        .bindTo(dispatcher);
+                this.handle = MethodHandles.insertArguments(mh, 1, index);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalStateException("Cannot bind generated dispatcher " + dispatcher, e);
+            }
+            this.description = dispatcher.getClass().getName() + "#"
+                    + dispatcher.methodName() + "(" + eventType.getName() + ")";
+        }
+
+        /**
+         * Gets the handler method.
+         * 
+         * @return  the method or {@code null} for {@link #NO_HANDLER} and
+         *          handlers invoked through a generated dispatcher
+         */
+        public Method method() {
+            return method;
+        }
+
+        /**
+         * Invokes the handler method on the given object.
+         * 
+         * @param target  the object to invoke the handler on
+         * @param event   the event to be handled
+         * @return  the result of the method invocation, if any
+         */
+        public Object invoke(Object target, Event<?> event) {
+            try {
+                return handle.invokeExact(target, (Event) event);
+            } catch (Throwable t) {
+                throw new RuntimeException("Invocation of endpoint method "
+                        + description + " on object "+ target + " failed: " + t.getMessage(), t);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Handler[" + description + "]";
+        }
+
+    }
+
+}
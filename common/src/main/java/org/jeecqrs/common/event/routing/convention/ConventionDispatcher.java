@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.event.routing.convention;
+
+import org.jeecqrs.common.event.Event;
+
+/**
+ * Dispatches events to the convention event handler methods of a class
+ * without reflection.
+ * Implementations are generated at compile time by the
+ * {@code jcommondomain-processor} annotation processor and are picked up
+ * by {@link ConventionDispatchTable} when present.
+ */
+public interface ConventionDispatcher {
+
+    /**
+     * Gets the name of the handler methods this dispatcher invokes.
+     * 
+     * @return  the handler method name
+     */
+    String methodName();
+
+    /**
+     * Gets the parameter types of the handler methods.
+     * The index of a type in the returned array identifies the handler
+     * in {@link #dispatch}.
+     * 
+     * @return  the handled event types
+     */
+    Class<?>[] eventTypes();
+
+    /**
+     * Invokes a handler method on the given object.
+     * 
+     * @param target   the object to invoke the handler on
+     * @param handler  the index of the handler in {@link #eventTypes()}
+     * @param event    the event to be handled
+     * @return  the result of the method invocation, if any
+     */
+    Object dispatch(Object target, int handler, Event<?> event);
+
+}
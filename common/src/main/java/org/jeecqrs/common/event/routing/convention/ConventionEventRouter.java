@@ -21,8 +21,6 @@
 
 package org.jeecqrs.common.event.routing.convention;
 
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -30,7 +28,6 @@ import org.jeecqrs.common.event.Event;
 import org.jeecqrs.common.event.routing.EndpointNotFoundException;
 import org.jeecqrs.common.event.routing.EventRouteEndpoint;
 import org.jeecqrs.common.event.routing.EventRouter;
-import org.jeecqrs.common.event.routing.InvokeMethodEndpoint;
 import org.jeecqrs.common.util.Validate;
 
 /**
@@ -38,9 +35,16 @@ import org.jeecqrs.common.util.Validate;
   * on a convention regarding the endpoint method name and arguments.
   * The default name for the method to be called as endpoint is
   * "{@code when}", but the name can be overwritten in the constructor.
-  * For performance reasons, the reflection method lookup is cached
-  * in a static cache field, such that later calls do not need to use parse
-  * the object again.
+  * An event is routed to the handler method with the most specific
+  * parameter type the event is assignable to, i.e., a handler for a
+  * base event class or an event interface also receives the events
+  * of subtypes for which no more specific handler exists.
+  * For performance reasons, the handler methods of a class are collected
+  * once in a {@link ConventionDispatchTable} that is shared by all routers
+  * registered with instances of that class, such that later calls do not
+  * need to parse the object again.
+  * Endpoints that are registered explicitly take precedence over the
+  * handler methods found by convention.
   * 
   * @param <R> the return type
   * @param <E> the base event type
@@ -51,10 +55,15 @@ public class ConventionEventRouter<R, E extends Event> implements EventRouter<R,
 
     private final static String DEFAULT_METHOD_NAME = "when";
 
-    private final Map<Class<? extends E>, EventRouteEndpoint<R, E>> endpoints = new HashMap<>();
-    private static final Map<String, Method> methodCache = new HashMap<>();
+    // used until an object is registered, provides no handlers at all
+    private final static ConventionDispatchTable NO_OBJECT_TABLE =
+            ConventionDispatchTable.forClass(Object.class, DEFAULT_METHOD_NAME);
+
+    // explicitly registered endpoints, created on first registration
+    private Map<Class<? extends E>, EventRouteEndpoint<R, E>> endpoints;
 
     private Object object;
+    private ConventionDispatchTable table = NO_OBJECT_TABLE;
     private final boolean throwOnEndpointNotFound;
     private final String methodName;
 
@@ -75,10 +84,13 @@ public class ConventionEventRouter<R, E extends Event> implements EventRouter<R,
     public R routeEvent(E event) {
         Validate.notNull(event, "event must not be null");
         Class<E> type = (Class<E>) event.getClass();
-        EventRouteEndpoint<R, E> h = findEndpoints(type);
-        if (h != null) {
+        EventRouteEndpoint<R, E> h = lookup(type);
+        if (h != null)
             return h.consumeEvent(event);
-        } else if (throwOnEndpointNotFound)
+        ConventionDispatchTable.Handler handler = table.handlerFor(type);
+        if (handler != ConventionDispatchTable.NO_HANDLER)
+            return (R) handler.invoke(object, event);
+        else if (throwOnEndpointNotFound)
             throw new EndpointNotFoundException(type);
         return null;
     }
@@ -86,6 +98,7 @@ public class ConventionEventRouter<R, E extends Event> implements EventRouter<R,
     @Override
     public void register(Object obj) {
         this.object = obj;
+        this.table = obj != null ? ConventionDispatchTable.forClass(obj.getClass(), methodName) : NO_OBJECT_TABLE;
     }
 
     @Override
@@ -96,64 +109,13 @@ public class ConventionEventRouter<R, E extends Event> implements EventRouter<R,
         if (h != null)
             throw new IllegalStateException("endpoint already registered for type " + eventType.getCanonicalName());
         log.fine("Registering endpoint for event " + eventType + ": " + endpoint);
+        if (endpoints == null)
+            endpoints = new HashMap<>();
         endpoints.put(eventType, endpoint);
     }
 
-    private EventRouteEndpoint<R, E> findEndpoints(Class<? extends E> eventType) {
-        EventRouteEndpoint<R, E> h = lookup(eventType);
-        if (h != null)
-            return h;
-        if (object == null) // no object registered
-            return null;
-        Class<?> objType = object.getClass();
-        String key = String.format("%s#%s(%s)", objType.getCanonicalName(),
-                this.methodName, eventType.getCanonicalName());
-        Method method = cacheLookup(key, eventType);
-        if (method == null)
-            return null;
-        h = new InvokeMethodEndpoint<>(object, method);
-        this.register(eventType, h);
-        return h;
-    }
-
     private EventRouteEndpoint<R, E> lookup(Class<? extends E> eventType) {
-        return endpoints.get(eventType);
-    }
-
-    /**
-     * Use reflection to find the event handler method and add the result to
-     * the global method cache.
-     */
-    private Method cacheLookup(String key, Class<? extends E> eventType) {
-        synchronized (methodCache) {
-            Method method = methodCache.get(key);
-            if (method == null) {
-                method = traverseClassHierarchy(object.getClass(), eventType);
-                if (method != null) {
-                    method.setAccessible(true);
-                    methodCache.put(key, method);
-                }
-            }
-            return method;
-        }
-    }
-
-    private Method traverseClassHierarchy(Class<?> objType, Class<? extends E> eventType) {
-        try {
-            Method m = objType.getDeclaredMethod(methodName, eventType);
-            int mods = m.getModifiers();
-            /* Do not use default (package only) or private methods.  If this
-             * method is neither public nor protected, no super class can have 
-             * a method with the same name but with higher visibility.
-             */
-            if (!Modifier.isPublic(mods) && !Modifier.isProtected(mods))
-                return null;
-            return m;
-        } catch (NoSuchMethodException | SecurityException e) {
-            if (objType.getSuperclass() != null)
-                return traverseClassHierarchy(objType.getSuperclass(), eventType);
-        }
-        return null;
+        return endpoints != null ? endpoints.get(eventType) : null;
     }
     
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.event.sourcing;
+
+import java.util.Iterator;
+import org.jeecqrs.common.event.Event;
+
+/**
+ * Provides access to the {@link Load}, {@link Store} and {@link Version}
+ * methods of a class.
+ * The events are handed to {@link #load} as an iterator, so that they
+ * can be applied while the event stream is read.
+ * Implementations may be generated at compile time by the
+ * {@code jcommondomain-processor} annotation processor, in which case
+ * they are picked up by {@link EventSourcingUtil}.
+ */
+public interface EventSourcingAccessor {
+
+    void load(Object obj, long version, Iterator<? extends Event> events);
+    void store(Object obj, EventSourcingBus<? extends Event> bus);
+    long version(Object obj);
+
+}
@@ -21,6 +21,7 @@
 
 package org.jeecqrs.common.event.sourcing;
 
+import java.util.List;
 import org.jeecqrs.common.event.Event;
 
 /**
@@ -31,6 +32,20 @@ import org.jeecqrs.common.event.Event;
 public interface EventSourcingBus<E extends Event> {
 
     void store(E event);
+
+    /**
+     * Stores the given events, in order.
+     * The bus may keep the list instead of copying it, so the caller must
+     * not modify it afterwards, and the bus must not modify it either.
+     * Defaults to storing the events one by one.
+     * 
+     * @param events  the events to store
+     */
+    default void storeAll(List<? extends E> events) {
+        for (E event : events)
+            store(event);
+    }
+
     void commit(String commitId);
     
 }
@@ -20,76 +20,179 @@
  */
 package org.jeecqrs.common.event.sourcing;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jeecqrs.common.domain.model.DomainEvent;
 import org.jeecqrs.common.event.Event;
-import org.jeecqrs.common.util.ReflectionUtils;
+import org.jeecqrs.common.util.GeneratedClasses;
 import org.jeecqrs.common.util.Validate;
 
 /**
  * Utilities to apply event sourcing.
+ * The {@link Load}, {@link Store} and {@link Version} methods are looked up
+ * once per class and invoked through an {@link EventSourcingAccessor}.
+ * If the {@code jcommondomain-processor} annotation processor generated an
+ * accessor for a class, that accessor is used, otherwise the methods are
+ * invoked through method handles.
  */
 public class EventSourcingUtil {
 
-    private final static Map<String, Method> methodCache = new HashMap<>();
+    private final static ClassValue<EventSourcingAccessor> accessors =
+            new ClassValue<EventSourcingAccessor>() {
+        @Override
+        protected EventSourcingAccessor computeValue(Class<?> type) {
+            EventSourcingAccessor generated = GeneratedClasses.instanceFor(type, EventSourcingAccessor.class);
+            if (generated != null)
+                return generated;
+            return new MethodHandleEventSourcingAccessor(type);
+        }
+    };
+
+    private final static ClassValue<OptionalMethodsAccessor> optionalAccessors =
+            new ClassValue<OptionalMethodsAccessor>() {
+        @Override
+        protected OptionalMethodsAccessor computeValue(Class<?> type) {
+            return new OptionalMethodsAccessor(type);
+        }
+    };
+
+    private final static ClassValue<InstanceFactory<?>> factories =
+            new ClassValue<InstanceFactory<?>>() {
+        @Override
+        protected InstanceFactory<?> computeValue(Class<?> type) {
+            InstanceFactory<?> generated = GeneratedClasses.instanceFor(type, InstanceFactory.class);
+            if (generated != null)
+                return generated;
+            return new MethodHandleInstanceFactory<>(type);
+        }
+    };
 
     public static <T> T createByDefaultConstructor(Class<T> clazz) {
+        return instanceFactoryFor(clazz).newInstance();
+    }
+
+    /**
+     * Gets the factory that creates instances of the given class through
+     * its default constructor.
+     * The factory is created on first use and shared afterwards.
+     * 
+     * @param <T>    the type of the created instances
+     * @param clazz  the class to instantiate
+     * @return the factory for the class
+     */
+    public static <T> InstanceFactory<T> instanceFactoryFor(Class<T> clazz) {
         Validate.notNull(clazz, "class must not be null");
-        try {
-            Constructor<T> constr = clazz.getDeclaredConstructor(new Class<?>[]{});
-            constr.setAccessible(true);
-            return (T) constr.newInstance(new Object[]{});
-        } catch (InstantiationException | IllegalAccessException |
-                IllegalArgumentException | InvocationTargetException e) {
-            String msg = String.format("Cannot create object of type %s: %s",
-                    clazz, e.getMessage());
-            throw new RuntimeException(msg, e);
-        } catch (NoSuchMethodException e) {
-            String msg = String.format("Class does not provide default constructor: %s: %s",
-                    clazz, e.getMessage());
-            throw new RuntimeException(msg, e);
-        }
+        return (InstanceFactory<T>) factories.get(clazz);
     }
 
     public static <T, E extends Event> void loadEventStreamIntoObject(T obj, long version, List<E> events) {
+        Validate.notNull(events, "event must not be null");
+        loadEventStreamIntoObject(obj, version, events.iterator());
+    }
+
+    /**
+     * Loads the given events into a fresh object.
+     * The events are handed to the {@link Load} method as they are read
+     * from the iterator, without collecting them first, unless the method
+     * requires a list.
+     * 
+     * @param <T>      the type of the object
+     * @param <E>      the type of the events
+     * @param obj      the object to load
+     * @param version  the version of the event stream
+     * @param events   the events to load
+     */
+    public static <T, E extends Event> void loadEventStreamIntoObject(T obj, long version, Iterator<E> events) {
+        Validate.notNull(obj, "obj must not be null");
+        Validate.notNull(events, "event must not be null");
+        EventSourcingAccessor accessor = accessorFor(obj.getClass());
+        long curVersion = accessor.version(obj);
+        if (curVersion > 0)
+            throw new IllegalArgumentException("object is not fresh, has version " + curVersion);
+        accessor.load(obj, version, events);
+    }
+
+    /**
+     * Tells whether the given class provides both a {@link CaptureSnapshot}
+     * and a {@link RestoreSnapshot} method.
+     * 
+     * @param clazz  the event sourced class
+     * @return whether instances of the class can be snapshotted
+     */
+    public static boolean supportsSnapshots(Class<?> clazz) {
+        Validate.notNull(clazz, "clazz must not be null");
+        return optionalAccessors.get(clazz).supportsSnapshots();
+    }
+
+    /**
+     * Captures a snapshot of the given object, if the policy asks for one.
+     * 
+     * @param <T>     the type of the object
+     * @param obj     the object to snapshot
+     * @param policy  the policy that decides whether a snapshot is due
+     * @return the snapshot, or {@code null} if no snapshot was captured
+     */
+    public static <T> Snapshot captureSnapshot(T obj, SnapshotPolicy policy) {
         Validate.notNull(obj, "obj must not be null");
+        Validate.notNull(policy, "policy must not be null");
+        return optionalAccessors.get(obj.getClass()).capture(obj, policy);
+    }
+
+    /**
+     * Restores a fresh object from the given snapshot and the events that
+     * follow it in the event stream.
+     * 
+     * @param <T>       the type of the object
+     * @param <E>       the type of the events
+     * @param obj       the object to restore
+     * @param snapshot  the snapshot to restore from
+     * @param version   the version of the event stream
+     * @param events    the events that follow the snapshot
+     */
+    public static <T, E extends Event> void restoreSnapshotIntoObject(
+            T obj, Snapshot snapshot, long version, Iterator<E> events) {
+        Validate.notNull(obj, "obj must not be null");
+        Validate.notNull(snapshot, "snapshot must not be null");
         Validate.notNull(events, "event must not be null");
         long curVersion = retrieveVersion(obj);
         if (curVersion > 0)
             throw new IllegalArgumentException("object is not fresh, has version " + curVersion);
-        try {
-            Method load = ReflectionUtils.findUniqueMethod(obj.getClass(), Load.class,
-                    new Object[]{long.class, List.class});
-            load.invoke(obj, new Object[]{version, events});
-        } catch (IllegalAccessException | InvocationTargetException ex) {
-            String msg = String.format("Cannot load event stream for object of type %s: %s",
-                    obj.getClass(), ex.getMessage());
-            throw new RuntimeException(msg, ex);
-        }
+        optionalAccessors.get(obj.getClass()).restore(obj, snapshot, version, events);
+    }
+
+    /**
+     * Tells whether the given class provides a {@link CatchUp} method.
+     * 
+     * @param clazz  the event sourced class
+     * @return whether loaded instances of the class can catch up
+     */
+    public static boolean supportsCatchUp(Class<?> clazz) {
+        Validate.notNull(clazz, "clazz must not be null");
+        return optionalAccessors.get(clazz).supportsCatchUp();
+    }
+
+    /**
+     * Brings a loaded object up to the given version of its event stream,
+     * applying only the events the object has not seen yet.
+     * 
+     * @param <T>      the type of the object
+     * @param <E>      the type of the events
+     * @param obj      the object to catch up
+     * @param version  the version of the event stream
+     * @param events   all events of the stream, starting with the first
+     */
+    public static <T, E extends Event> void catchUpObject(T obj, long version, Iterator<E> events) {
+        Validate.notNull(obj, "obj must not be null");
+        Validate.notNull(events, "event must not be null");
+        optionalAccessors.get(obj.getClass()).catchUp(obj, version, events);
     }
 
     public static <T> long retrieveVersion(T obj) {
-        Class<T> clazz = (Class<T>) obj.getClass();
         Validate.notNull(obj, "obj must not be null");
-        try {
-            Method version = ReflectionUtils.findUniqueMethod(clazz, Version.class, new Object[]{});
-            Object res = version.invoke(obj, new Object[]{});
-            if (!Long.class.equals(res.getClass()) && !long.class.equals(res.getClass())) {
-                throw new IllegalStateException("@Version method does not return long: " + clazz);
-            }
-            return (long) res;
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-            String msg = String.format("Cannot obtain version of class of type %s: %s", clazz, e);
-            throw new RuntimeException(msg, e);
-        }
+        return accessorFor(obj.getClass()).version(obj);
     }
 
     public static <T, E extends Event> void transferChanges(T obj, final List<E> changes) {
@@ -99,23 +202,53 @@ public class EventSourcingUtil {
                 changes.add(event);
             }
             @Override
+            public void storeAll(List<? extends E> events) {
+                changes.addAll(events);
+            }
+            @Override
             public void commit(String commitId) {
                 throw new UnsupportedOperationException("Not supported yet.");
             }
         };
-        invokeStoreMethod(obj, bus);;
+        invokeStoreMethod(obj, bus);
     }
 
     public static <T> void invokeStoreMethod(T obj, EventSourcingBus<? extends Event> bus) {
+        accessorFor(obj.getClass()).store(obj, bus);
+    }
+
+    /**
+     * Gets the accessor for the event sourcing methods of the given class.
+     * The accessor is created on first use and shared afterwards.
+     * 
+     * @param clazz  the event sourced class
+     * @return the accessor for the class
+     */
+    public static EventSourcingAccessor accessorFor(Class<?> clazz) {
+        Validate.notNull(clazz, "clazz must not be null");
+        return accessors.get(clazz);
+    }
+
+    /**
+     * Looks up the event sourcing methods and the default constructor of
+     * the given class, such that later calls do not pay the lookup.
+     * 
+     * @param clazz     the class to prepare
+     * @param problems  receives a description of each problem found
+     */
+    static void prepare(Class<?> clazz, List<String> problems) {
+        EventSourcingAccessor accessor = accessorFor(clazz);
+        if (accessor instanceof MethodHandleEventSourcingAccessor)
+            ((MethodHandleEventSourcingAccessor) accessor).validate(problems);
         try {
-            Method store = ReflectionUtils.findUniqueMethod(obj.getClass(),
-                    Store.class, new Object[]{EventSourcingBus.class});
-            store.invoke(obj, new Object[]{bus});
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-            String msg = String.format("Cannot find store method for type %s: %s",
-                    obj.getClass(), e.getMessage());
-            throw new RuntimeException(msg, e);
+            optionalAccessors.get(clazz);
+        } catch (RuntimeException e) {
+            problems.add(e.getMessage());
         }
+        InstanceFactory<?> factory = instanceFactoryFor(clazz);
+        if (factory instanceof MethodHandleInstanceFactory
+                && ((MethodHandleInstanceFactory<?>) factory).problem() != null)
+            problems.add(((MethodHandleInstanceFactory<?>) factory).problem());
     }
 
 }
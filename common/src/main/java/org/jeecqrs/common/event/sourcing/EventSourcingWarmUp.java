@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.event.sourcing;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jeecqrs.common.event.Event;
+import org.jeecqrs.common.event.routing.convention.ConventionDispatchTable;
+import org.jeecqrs.common.util.ClassPathScanner;
+import org.jeecqrs.common.util.ReflectionUtils;
+import org.jeecqrs.common.util.Validate;
+
+/**
+ * Prepares aggregate and saga classes at startup, such that the first
+ * requests after a deployment do not pay the reflective lookups.
+ * For each class, the warm-up builds the event handler dispatch table,
+ * resolves the handlers for the known event types and looks up the
+ * event sourcing methods and the default constructor.  Problems such as
+ * missing or ignored handlers are collected in a {@link WarmUpReport}.
+ * <pre>
+ * WarmUpReport report = new EventSourcingWarmUp()
+ *         .scan(getClass().getClassLoader(), "com.example.domain")
+ *         .expectHandlers(Account.class, AccountOpened.class, MoneyDeposited.class)
+ *         .run();
+ * report.failOnProblems();
+ * </pre>
+ */
+public class EventSourcingWarmUp {
+
+    private final static Logger log = Logger.getLogger(EventSourcingWarmUp.class.getCanonicalName());
+
+    private final static String DEFAULT_METHOD_NAME = "when";
+
+    private final Set<Class<?>> types = new LinkedHashSet<>();
+    private final Set<Class<?>> eventTypes = new LinkedHashSet<>();
+    private final Map<Class<?>, Set<Class<?>>> expectedHandlers = new LinkedHashMap<>();
+    private String methodName = DEFAULT_METHOD_NAME;
+
+    /**
+     * Adds aggregate or saga classes to be prepared.
+     * 
+     * @param types  the classes
+     * @return  this
+     */
+    public EventSourcingWarmUp add(Class<?>... types) {
+        this.types.addAll(Arrays.asList(types));
+        return this;
+    }
+
+    /**
+     * Adds event types whose handlers are resolved for every class.
+     * A class without a handler for such an event type is not a problem.
+     * 
+     * @param eventTypes  the event types
+     * @return  this
+     */
+    public EventSourcingWarmUp addEvents(Class<?>... eventTypes) {
+        this.eventTypes.addAll(Arrays.asList(eventTypes));
+        return this;
+    }
+
+    /**
+     * Requires the given class to provide handlers for the given event types.
+     * A missing handler is reported as a problem.
+     * 
+     * @param type        the aggregate or saga class
+     * @param eventTypes  the event types that must be handled
+     * @return  this
+     */
+    public EventSourcingWarmUp expectHandlers(Class<?> type, Class<?>... eventTypes) {
+        add(type);
+        Set<Class<?>> expected = expectedHandlers.get(type);
+        if (expected == null) {
+            expected = new LinkedHashSet<>();
+            expectedHandlers.put(type, expected);
+        }
+        expected.addAll(Arrays.asList(eventTypes));
+        return this;
+    }
+
+    /**
+     * Adds the concrete event sourced classes, i.e., classes with a
+     * {@link Load} method, and the concrete event types found in the given
+     * packages and their sub-packages.
+     * 
+     * @param classLoader   the class loader to scan
+     * @param packageNames  the names of the packages to scan
+     * @return  this
+     */
+    public EventSourcingWarmUp scan(ClassLoader classLoader, String... packageNames) {
+        for (String packageName : packageNames) {
+            for (Class<?> c : ClassPathScanner.findClasses(classLoader, packageName)) {
+                if (c.isInterface() || Modifier.isAbstract(c.getModifiers()))
+                    continue;
+                if (Event.class.isAssignableFrom(c))
+                    eventTypes.add(c);
+                else if (ReflectionUtils.findAnnotatedMethod(c, Load.class) != null)
+                    types.add(c);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Sets the name of the event handler methods, defaults to {@code when}.
+     * 
+     * @param methodName  the method name
+     * @return  this
+     */
+    public EventSourcingWarmUp handlerMethodName(String methodName) {
+        Validate.notNull(methodName, "methodName must not be null");
+        this.methodName = methodName;
+        return this;
+    }
+
+    /**
+     * Prepares all classes.
+     * 
+     * @return  the report
+     */
+    public WarmUpReport run() {
+        long start = System.currentTimeMillis();
+        WarmUpReport report = new WarmUpReport();
+        for (Class<?> type : types)
+            prepare(type, report);
+        long end = System.currentTimeMillis();
+        log.log(report.hasProblems() ? Level.WARNING : Level.INFO,
+                "Warm-up finished in {0} ms: {1}", new Object[]{end - start, report});
+        return report;
+    }
+
+    private void prepare(Class<?> type, WarmUpReport report) {
+        ConventionDispatchTable table = ConventionDispatchTable.forClass(type, methodName);
+        for (Class<?> hidden : table.hiddenEventTypes())
+            report.problem(type, "handler for " + hidden.getName()
+                    + " is neither public nor protected and is ignored");
+        for (Class<?> eventType : eventTypes)
+            resolve(table, eventType, report);
+        Set<Class<?>> expected = expectedHandlers.get(type);
+        if (expected != null) {
+            for (Class<?> eventType : expected) {
+                if (resolve(table, eventType, report) == ConventionDispatchTable.NO_HANDLER)
+                    report.problem(type, "no handler for " + eventType.getName());
+            }
+        }
+        List<String> problems = new ArrayList<>();
+        EventSourcingUtil.prepare(type, problems);
+        for (String problem : problems)
+            report.problem(type, problem);
+        report.prepared(type);
+    }
+
+    private ConventionDispatchTable.Handler resolve(ConventionDispatchTable table,
+            Class<?> eventType, WarmUpReport report) {
+        try {
+            return table.handlerFor(eventType);
+        } catch (IllegalStateException e) {
+            report.problem(table.targetType(), e.getMessage());
+            return null;
+        }
+    }
+
+}
@@ -28,7 +28,9 @@ import java.lang.annotation.Target;
 
 /**
  * Provides the ability to load an object by means of event sourcing.
- * Needs to be a method with arguments {@code long, List<DomainEvent>}.
+ * Needs to be a method with arguments {@code long, Iterator<DomainEvent>},
+ * which receives the events while they are read from the event stream,
+ * or {@code long, List<DomainEvent>}, which receives all events at once.
  */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
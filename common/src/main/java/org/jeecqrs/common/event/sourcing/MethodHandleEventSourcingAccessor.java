@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.event.sourcing;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.jeecqrs.common.event.Event;
+import org.jeecqrs.common.util.ReflectionUtils;
+
+/**
+ * Accesses the {@link Load}, {@link Store} and {@link Version} methods of
+ * a class through method handles that are looked up once per class.
+ * Missing or malformed methods are reported when they are used, with the
+ * same exceptions as {@link ReflectionUtils#findUniqueMethod}.
+ * <p>
+ * A {@link Load} method may take the events either as an {@link Iterator},
+ * which lets it apply them while the event stream is read, or as a
+ * {@link List}, in which case the events are collected first.
+ */
+final class MethodHandleEventSourcingAccessor implements EventSourcingAccessor {
+
+    private static final Object[] LOAD_PARAMS = new Object[]{long.class, Iterator.class};
+    private static final Object[] LOAD_LIST_PARAMS = new Object[]{long.class, List.class};
+    private static final Object[] STORE_PARAMS = new Object[]{EventSourcingBus.class};
+    private static final Object[] VERSION_PARAMS = new Object[]{};
+
+    private static final MethodType LOAD_TYPE =
+            MethodType.methodType(void.class, Object.class, long.class, Iterator.class);
+    private static final MethodType STORE_TYPE =
+            MethodType.methodType(void.class, Object.class, EventSourcingBus.class);
+    private static final MethodType VERSION_TYPE =
+            MethodType.methodType(long.class, Object.class);
+
+    private static final MethodHandle TO_LIST;
+    static {
+        try {
+            TO_LIST = MethodHandles.lookup().findStatic(MethodHandleEventSourcingAccessor.class,
+                    "toList", MethodType.methodType(List.class, Iterator.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Class<?> clazz;
+    private final MethodHandle load;
+    private final MethodHandle store;
+    private final MethodHandle version;
+
+    MethodHandleEventSourcingAccessor(Class<?> clazz) {
+        this.clazz = clazz;
+        this.load = findLoad();
+        this.store = find(Store.class, STORE_PARAMS, STORE_TYPE);
+        this.version = find(Version.class, VERSION_PARAMS, VERSION_TYPE);
+    }
+
+    @Override
+    public void load(Object obj, long version, Iterator<? extends Event> events) {
+        MethodHandle mh = available(load, Load.class, LOAD_PARAMS);
+        try {
+            mh.invokeExact(obj, version, (Iterator) events);
+        } catch (Throwable t) {
+            String msg = String.format("Cannot load event stream for object of type %s: %s",
+                    clazz, t.getMessage());
+            throw new RuntimeException(msg, t);
+        }
+    }
+
+    @Override
+    public void store(Object obj, EventSourcingBus<? extends Event> bus) {
+        MethodHandle mh = available(store, Store.class, STORE_PARAMS);
+        try {
+            mh.invokeExact(obj, (EventSourcingBus) bus);
+        } catch (Throwable t) {
+            String msg = String.format("Cannot find store method for type %s: %s",
+                    clazz, t.getMessage());
+            throw new RuntimeException(msg, t);
+        }
+    }
+
+    @Override
+    public long version(Object obj) {
+        MethodHandle mh = available(version, Version.class, VERSION_PARAMS);
+        try {
+            return (long) mh.invokeExact(obj);
+        } catch (Throwable t) {
+            String msg = String.format("Cannot obtain version of class of type %s: %s", clazz, t);
+            throw new RuntimeException(msg, t);
+        }
+    }
+
+    /**
+     * Describes the problems with the event sourcing methods of the class.
+     * 
+     * @param problems  receives a description of each problem found
+     */
+    void validate(List<String> problems) {
+        validate(load, Load.class, LOAD_PARAMS, problems);
+        validate(store, Store.class, STORE_PARAMS, problems);
+        validate(version, Version.class, VERSION_PARAMS, problems);
+    }
+
+    private void validate(MethodHandle mh, Class<? extends Annotation> annotation,
+            Object[] params, List<String> problems) {
+        try {
+            available(mh, annotation, params);
+        } catch (RuntimeException e) {
+            problems.add(e.getMessage());
+        }
+    }
+
+    private MethodHandle findLoad() {
+        Method m = ReflectionUtils.findAnnotatedMethod(clazz, Load.class);
+        if (m == null)
+            return null;
+        Object[] params = m.getParameterTypes();
+        boolean list = Arrays.deepEquals(LOAD_LIST_PARAMS, params);
+        if (!list && !Arrays.deepEquals(LOAD_PARAMS, params))
+            return null;
+        try {
+            m.setAccessible(true);
+            MethodHandle mh = MethodHandles.lookup().unreflect(m);
+            if (list)
+                mh = MethodHandles.filterArguments(mh, 2, TO_LIST);
+            return mh.asType(LOAD_TYPE);
+        } catch (IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private MethodHandle find(Class<? extends Annotation> annotation, Object[] params, MethodType type) {
+        Method m;
+        try {
+            m = ReflectionUtils.findUniqueMethod(clazz, annotation, params);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        Class<?> returnType = m.getReturnType();
+        if (type.returnType() == long.class && returnType != long.class && returnType != Long.class)
+            return null;
+        try {
+            return MethodHandles.lookup().unreflect(m).asType(type);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the given handle or throws the exception that describes why
+     * the method is not available.
+     */
+    private MethodHandle available(MethodHandle mh, Class<? extends Annotation> annotation, Object[] params) {
+        if (mh != null)
+            return mh;
+        Method m = ReflectionUtils.findUniqueMethod(clazz, annotation, params);
+        if (annotation == Version.class)
+            throw new IllegalStateException("@Version method does not return long: " + clazz);
+        throw new IllegalStateException("Cannot access @" + annotation.getSimpleName() + " method " + m);
+    }
+
+    private static List<Object> toList(Iterator<?> it) {
+        List<Object> list = new ArrayList<>();
+        while (it.hasNext())
+            list.add(it.next());
+        return list;
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.event.sourcing;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+
+/**
+ * Creates instances through a method handle for the default constructor
+ * that is looked up once per class.
+ * If the class cannot be instantiated, the problem is reported when an
+ * instance is requested.
+ * 
+ * @param <T>  the type of the created instances
+ */
+final class MethodHandleInstanceFactory<T> implements InstanceFactory<T> {
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private final Class<T> clazz;
+    private final MethodHandle constructor;
+    private final String problem;
+
+    MethodHandleInstanceFactory(Class<T> clazz) {
+        this.clazz = clazz;
+        MethodHandle mh = null;
+        String msg = null;
+        try {
+            Constructor<T> constr = clazz.getDeclaredConstructor(new Class<?>[]{});
+            constr.setAccessible(true);
+            mh = MethodHandles.lookup().unreflectConstructor(constr).asType(CONSTRUCTOR_TYPE);
+        } catch (NoSuchMethodException e) {
+            msg = String.format("Class does not provide default constructor: %s: %s",
+                    clazz, e.getMessage());
+        } catch (IllegalAccessException | RuntimeException e) {
+            msg = String.format("Cannot create object of type %s: %s",
+                    clazz, e.getMessage());
+        }
+        this.constructor = mh;
+        this.problem = msg;
+    }
+
+    @Override
+    public T newInstance() {
+        if (constructor == null)
+            throw new RuntimeException(problem);
+        try {
+            return clazz.cast(constructor.invokeExact());
+        } catch (Throwable t) {
+            String msg = String.format("Cannot create object of type %s: %s",
+                    clazz, t.getMessage());
+            throw new RuntimeException(msg, t);
+        }
+    }
+
+    /**
+     * Gets the reason why no instances can be created.
+     * 
+     * @return the problem, or {@code null} if instances can be created
+     */
+    String problem() {
+        return problem;
+    }
+
+}
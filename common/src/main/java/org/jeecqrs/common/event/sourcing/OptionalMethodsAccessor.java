@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.event.sourcing;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import org.jeecqrs.common.util.ReflectionUtils;
+
+/**
+ * Accesses the optional {@link CaptureSnapshot}, {@link RestoreSnapshot}
+ * and {@link CatchUp} methods of a class through method handles that are
+ * looked up once per class.
+ * A class supports snapshots only if it provides both snapshot methods.
+ */
+final class OptionalMethodsAccessor {
+
+    private static final Object[] CAPTURE_PARAMS = new Object[]{SnapshotPolicy.class};
+    private static final Object[] RESTORE_PARAMS = new Object[]{Snapshot.class, long.class, Iterator.class};
+    private static final Object[] CATCH_UP_PARAMS = new Object[]{long.class, Iterator.class};
+
+    private static final MethodType CAPTURE_TYPE =
+            MethodType.methodType(Snapshot.class, Object.class, SnapshotPolicy.class);
+    private static final MethodType RESTORE_TYPE =
+            MethodType.methodType(void.class, Object.class, Snapshot.class, long.class, Iterator.class);
+    private static final MethodType CATCH_UP_TYPE =
+            MethodType.methodType(void.class, Object.class, long.class, Iterator.class);
+
+    private final Class<?> clazz;
+    private final MethodHandle capture;
+    private final MethodHandle restore;
+    private final MethodHandle catchUp;
+
+    OptionalMethodsAccessor(Class<?> clazz) {
+        this.clazz = clazz;
+        this.capture = find(CaptureSnapshot.class, CAPTURE_PARAMS, CAPTURE_TYPE);
+        this.restore = find(RestoreSnapshot.class, RESTORE_PARAMS, RESTORE_TYPE);
+        this.catchUp = find(CatchUp.class, CATCH_UP_PARAMS, CATCH_UP_TYPE);
+    }
+
+    boolean supportsSnapshots() {
+        return capture != null && restore != null;
+    }
+
+    Snapshot capture(Object obj, SnapshotPolicy policy) {
+        if (!supportsSnapshots())
+            return null;
+        try {
+            return (Snapshot) capture.invokeExact(obj, policy);
+        } catch (Throwable t) {
+            String msg = String.format("Cannot capture snapshot of object of type %s: %s",
+                    clazz, t.getMessage());
+            throw new RuntimeException(msg, t);
+        }
+    }
+
+    void restore(Object obj, Snapshot snapshot, long version, Iterator<?> events) {
+        if (!supportsSnapshots())
+            throw new IllegalStateException("Class does not support snapshots: " + clazz);
+        try {
+            restore.invokeExact(obj, snapshot, version, (Iterator) events);
+        } catch (Throwable t) {
+            String msg = String.format("Cannot restore snapshot into object of type %s: %s",
+                    clazz, t.getMessage());
+            throw new RuntimeException(msg, t);
+        }
+    }
+
+    boolean supportsCatchUp() {
+        return catchUp != null;
+    }
+
+    void catchUp(Object obj, long version, Iterator<?> events) {
+        if (!supportsCatchUp())
+            throw new IllegalStateException("Class does not support catch-up: " + clazz);
+        try {
+            catchUp.invokeExact(obj, version, (Iterator) events);
+        } catch (Throwable t) {
+            String msg = String.format("Cannot catch up object of type %s: %s",
+                    clazz, t.getMessage());
+            throw new RuntimeException(msg, t);
+        }
+    }
+
+    private MethodHandle find(Class<? extends Annotation> annotation, Object[] params, MethodType type) {
+        if (ReflectionUtils.findAnnotatedMethod(clazz, annotation) == null)
+            return null;
+        Method m = ReflectionUtils.findUniqueMethod(clazz, annotation, params);
+        if (!type.returnType().isAssignableFrom(m.getReturnType()))
+            throw new IllegalArgumentException("@" + annotation.getSimpleName()
+                    + " method must return " + type.returnType().getSimpleName() + ": " + m);
+        try {
+            return MethodHandles.lookup().unreflect(m).asType(type);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access @" + annotation.getSimpleName() + " method " + m, e);
+        }
+    }
+
+}
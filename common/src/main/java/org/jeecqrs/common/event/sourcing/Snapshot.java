@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.event.sourcing;
+
+import java.io.Serializable;
+import org.jeecqrs.common.util.Validate;
+
+/**
+ * The state of an event sourced object at a given version.
+ * Restoring the state and replaying the events that follow the first
+ * {@link #eventCount()} events of the stream yields the same object as
+ * replaying the whole stream.
+ */
+public final class Snapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long version;
+    private final long eventCount;
+    private final Serializable state;
+    private final long takenOn;
+
+    public Snapshot(long version, long eventCount, Serializable state) {
+        this(version, eventCount, state, System.currentTimeMillis());
+    }
+
+    public Snapshot(long version, long eventCount, Serializable state, long takenOn) {
+        Validate.isTrue(version >= 0, "version must not be negative");
+        Validate.isTrue(eventCount >= 0, "eventCount must not be negative");
+        Validate.notNull(state, "state must not be null");
+        this.version = version;
+        this.eventCount = eventCount;
+        this.state = state;
+        this.takenOn = takenOn;
+    }
+
+    /**
+     * Gets the version of the event stream the snapshot was taken at.
+     * 
+     * @return the version
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Gets the number of events of the stream that are covered by the
+     * snapshot.
+     * 
+     * @return the number of events
+     */
+    public long eventCount() {
+        return eventCount;
+    }
+
+    public Serializable state() {
+        return state;
+    }
+
+    /**
+     * Gets the time the snapshot was taken, in milliseconds since the epoch.
+     * 
+     * @return the time the snapshot was taken
+     */
+    public long takenOn() {
+        return takenOn;
+    }
+
+    @Override
+    public String toString() {
+        return "Snapshot{" + "version=" + version + ", eventCount=" + eventCount +
+                ", takenOn=" + takenOn + '}';
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.event.sourcing;
+
+import java.util.concurrent.TimeUnit;
+import org.jeecqrs.common.util.Validate;
+
+/**
+ * Common {@link SnapshotPolicy} implementations.
+ */
+public class SnapshotPolicies {
+
+    private static final SnapshotPolicy NEVER = new SnapshotPolicy() {
+        @Override
+        public boolean shouldSnapshot(long eventsSinceSnapshot, long lastSnapshotTime) {
+            return false;
+        }
+        @Override
+        public String toString() {
+            return "never";
+        }
+    };
+
+    /**
+     * Never captures snapshots.
+     * 
+     * @return the policy
+     */
+    public static SnapshotPolicy never() {
+        return NEVER;
+    }
+
+    /**
+     * Captures a snapshot once at least the given number of events have
+     * been applied since the last snapshot.
+     * 
+     * @param events  the number of events between snapshots
+     * @return the policy
+     */
+    public static SnapshotPolicy everyEvents(final long events) {
+        Validate.isTrue(events > 0, "events must be positive");
+        return new SnapshotPolicy() {
+            @Override
+            public boolean shouldSnapshot(long eventsSinceSnapshot, long lastSnapshotTime) {
+                return eventsSinceSnapshot >= events;
+            }
+            @Override
+            public String toString() {
+                return "every " + events + " events";
+            }
+        };
+    }
+
+    /**
+     * Captures a snapshot if events have been applied since the last
+     * snapshot and the last snapshot is at least the given time old.
+     * Objects without a snapshot get one as soon as they have events.
+     * 
+     * @param duration  the minimum time between snapshots
+     * @param unit      the unit of {@code duration}
+     * @return the policy
+     */
+    public static SnapshotPolicy every(long duration, TimeUnit unit) {
+        Validate.isTrue(duration > 0, "duration must be positive");
+        Validate.notNull(unit, "unit must not be null");
+        final long millis = unit.toMillis(duration);
+        return new SnapshotPolicy() {
+            @Override
+            public boolean shouldSnapshot(long eventsSinceSnapshot, long lastSnapshotTime) {
+                return eventsSinceSnapshot > 0
+                        && System.currentTimeMillis() - lastSnapshotTime >= millis;
+            }
+            @Override
+            public String toString() {
+                return "every " + millis + " ms";
+            }
+        };
+    }
+
+    /**
+     * Captures a snapshot if any of the given policies asks for one.
+     * 
+     * @param policies  the policies to combine
+     * @return the policy
+     */
+    public static SnapshotPolicy anyOf(final SnapshotPolicy... policies) {
+        Validate.notNull(policies, "policies must not be null");
+        final SnapshotPolicy[] copy = policies.clone();
+        return new SnapshotPolicy() {
+            @Override
+            public boolean shouldSnapshot(long eventsSinceSnapshot, long lastSnapshotTime) {
+                for (SnapshotPolicy policy : copy)
+                    if (policy.shouldSnapshot(eventsSinceSnapshot, lastSnapshotTime))
+                        return true;
+                return false;
+            }
+        };
+    }
+
+}
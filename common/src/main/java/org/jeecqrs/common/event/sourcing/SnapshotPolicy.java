@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.event.sourcing;
+
+/**
+ * Decides when to capture a new {@link Snapshot} of an event sourced object.
+ * See {@link SnapshotPolicies} for common policies.
+ */
+public interface SnapshotPolicy {
+
+    /**
+     * Decides whether a new snapshot should be captured.
+     * 
+     * @param eventsSinceSnapshot  the number of events applied since the last snapshot
+     * @param lastSnapshotTime     the time the last snapshot was taken, in
+     *                             milliseconds since the epoch, or {@code 0}
+     *                             if there is none
+     * @return whether to capture a snapshot
+     */
+    boolean shouldSnapshot(long eventsSinceSnapshot, long lastSnapshotTime);
+
+}
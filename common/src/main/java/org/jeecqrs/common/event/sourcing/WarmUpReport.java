@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.event.sourcing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The result of an {@link EventSourcingWarmUp}: the classes that have been
+ * prepared and the problems found while doing so.
+ */
+public class WarmUpReport {
+
+    private final Set<Class<?>> preparedClasses = new LinkedHashSet<>();
+    private final List<Problem> problems = new ArrayList<>();
+
+    void prepared(Class<?> type) {
+        preparedClasses.add(type);
+    }
+
+    void problem(Class<?> type, String message) {
+        problems.add(new Problem(type, message));
+    }
+
+    public Set<Class<?>> preparedClasses() {
+        return Collections.unmodifiableSet(preparedClasses);
+    }
+
+    public List<Problem> problems() {
+        return Collections.unmodifiableList(problems);
+    }
+
+    public boolean hasProblems() {
+        return !problems.isEmpty();
+    }
+
+    /**
+     * Throws an exception if any problems have been found.
+     * 
+     * @throws IllegalStateException  if problems have been found
+     */
+    public void failOnProblems() {
+        if (hasProblems())
+            throw new IllegalStateException(toString());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder()
+                .append("Prepared ").append(preparedClasses.size()).append(" classes, ")
+                .append(problems.size()).append(" problems");
+        for (Problem p : problems)
+            sb.append("\n  ").append(p);
+        return sb.toString();
+    }
+
+    /**
+     * A problem found for a class.
+     */
+    public static class Problem {
+
+        private final Class<?> type;
+        private final String message;
+
+        Problem(Class<?> type, String message) {
+            this.type = type;
+            this.message = message;
+        }
+
+        public Class<?> type() {
+            return type;
+        }
+
+        public String message() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return type.getName() + ": " + message;
+        }
+
+    }
+
+}
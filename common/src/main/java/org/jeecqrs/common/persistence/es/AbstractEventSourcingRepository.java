@@ -21,14 +21,46 @@
 
 package org.jeecqrs.common.persistence.es;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jeecqrs.common.event.Event;
 import org.jeecqrs.common.event.sourcing.EventSourcingBus;
 import org.jeecqrs.common.event.sourcing.EventSourcingUtil;
+import org.jeecqrs.common.event.sourcing.Snapshot;
+import org.jeecqrs.common.event.sourcing.SnapshotPolicies;
+import org.jeecqrs.common.event.sourcing.SnapshotPolicy;
 import org.jeecqrs.common.util.Validate;
 
 /**
+ * Base class for repositories of event sourced objects.
+ * <p>
+ * If {@link #snapshotStore()} provides a store and the objects support
+ * snapshots, objects are restored from their newest snapshot plus the
+ * events that follow it, and a new snapshot is captured after saving
+ * whenever the {@link #snapshotPolicy()} asks for one.  Failures to read
+ * or write snapshots are logged and fall back to a full replay.
+ * <p>
+ * If {@link #aggregateCache()} provides a cache, objects that callers
+ * {@link #release} are kept in the cache and handed out again by the next
+ * {@link #ofIdentity} call for the same stream, without reading the stream.
+ * Loading checks an object out of the cache and only {@link #release} puts
+ * it back, so each instance is used by at most one caller at a time.
+ * Objects that are not released are simply not cached.  A failed save
+ * evicts the stream from the cache.  If the stream may be written by other
+ * processes, {@link #catchUpCachedObjects()} makes cache hits catch up with
+ * the stream before they are handed out.
  *
  * @param <T>  the entity type
  * @param <ID>  the type used to identify entities
@@ -36,7 +68,10 @@ import org.jeecqrs.common.util.Validate;
  */
 public abstract class AbstractEventSourcingRepository<T, ID, CID> {
 
+    private static final SnapshotPolicy DEFAULT_SNAPSHOT_POLICY = SnapshotPolicies.everyEvents(100);
+
     private Class<T> objectType;
+    private final ConflictStatistics conflictStatistics = new ConflictStatistics();
 
     public AbstractEventSourcingRepository() {
     }
@@ -55,10 +90,26 @@ public abstract class AbstractEventSourcingRepository<T, ID, CID> {
 
     protected T ofIdentity(Class<T> clazz, ID id) {
         Validate.notNull(id, "id must not be null");
-	long start = System.currentTimeMillis();
         String streamId = streamNameGenerator().streamNameFor(clazz, id);
+        return load(clazz, id, streamId);
+    }
+
+    private T load(Class<T> clazz, ID id, String streamId) {
+	long start = System.currentTimeMillis();
+        T cached = checkoutCached(clazz, streamId);
+        if (cached != null && catchUpCachedObjects())
+            cached = catchUpCached(cached, streamId);
+        if (cached != null) {
+            log.log(Level.FINE, "Cache hit for entity {0}#{1}",
+                    new Object[]{clazz.getSimpleName(), id});
+            return cached;
+        }
         T obj = createFreshInstance(clazz, id);
-        loadFromStream(obj, streamId);
+        Snapshot snapshot = loadSnapshot(clazz, streamId);
+        if (snapshot != null)
+            loadFromStream(obj, streamId, snapshot);
+        else
+            loadFromStream(obj, streamId);
 	long end = System.currentTimeMillis();
 	log.log(Level.FINE, "Loaded in {0} ms entity {1}#{2}",
                 new Object[]{end-start, clazz.getSimpleName(), id});
@@ -71,21 +122,497 @@ public abstract class AbstractEventSourcingRepository<T, ID, CID> {
         return this.ofIdentity(objectType, id);
     }
 
+    /**
+     * Tells whether an object with the given identity exists.
+     * The default implementation does not support this check.
+     * 
+     * @param clazz  the type of the object
+     * @param id     the identity of the object
+     * @return whether the object exists
+     */
+    protected boolean exists(Class<T> clazz, ID id) {
+        throw new UnsupportedOperationException(this.getClass() + " cannot check for existence");
+    }
+
+    public boolean exists(ID id) {
+        if (objectType == null)
+            throw new IllegalStateException("Cannot call #exists() without objectType");
+        Validate.notNull(id, "id must not be null");
+        return this.exists(objectType, id);
+    }
+
+    /**
+     * Loads the objects with the given identities.
+     * The stream names are resolved up front, and the objects are loaded on
+     * the {@link #batchLoadExecutor()}, if there is one.  Each identity is
+     * loaded once, even if it is contained multiple times.
+     * 
+     * @param clazz  the type of the objects
+     * @param ids    the identities of the objects to load
+     * @return the loaded objects and the failures
+     */
+    protected BatchLoadResult<ID, T> ofIdentities(Class<T> clazz, Collection<? extends ID> ids) {
+        Validate.notNull(ids, "ids must not be null");
+        long start = System.currentTimeMillis();
+        Map<ID, String> streamIds = streamNamesFor(clazz, new LinkedHashSet<>(ids));
+        Executor executor = batchLoadExecutor();
+        Map<ID, T> loaded = new LinkedHashMap<>();
+        Map<ID, RuntimeException> failures = new LinkedHashMap<>();
+        if (executor == null || streamIds.size() < 2) {
+            for (Map.Entry<ID, String> e : streamIds.entrySet()) {
+                try {
+                    loaded.put(e.getKey(), load(clazz, e.getKey(), e.getValue()));
+                } catch (Exception ex) {
+                    failures.put(e.getKey(), asFailure(e.getKey(), ex));
+                }
+            }
+        } else {
+            loadConcurrently(clazz, streamIds, executor, loaded, failures);
+        }
+        long end = System.currentTimeMillis();
+        log.log(Level.FINE, "Loaded in {0} ms {1} entities {2}, {3} failed",
+                new Object[]{end-start, loaded.size(), clazz.getSimpleName(), failures.size()});
+        return new BatchLoadResult<>(loaded, failures);
+    }
+
+    public BatchLoadResult<ID, T> ofIdentities(Collection<? extends ID> ids) {
+        if (objectType == null)
+            throw new IllegalStateException("Cannot call #ofIdentities() without objectType");
+        return this.ofIdentities(objectType, ids);
+    }
+
+    private void loadConcurrently(final Class<T> clazz, Map<ID, String> streamIds, Executor executor,
+            Map<ID, T> loaded, Map<ID, RuntimeException> failures) {
+        Map<ID, FutureTask<T>> tasks = new LinkedHashMap<>();
+        for (final Map.Entry<ID, String> e : streamIds.entrySet()) {
+            FutureTask<T> task = new FutureTask<>(new Callable<T>() {
+                @Override
+                public T call() {
+                    return load(clazz, e.getKey(), e.getValue());
+                }
+            });
+            tasks.put(e.getKey(), task);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException ex) {
+                task.run();
+            }
+        }
+        boolean interrupted = false;
+        for (Map.Entry<ID, FutureTask<T>> e : tasks.entrySet()) {
+            try {
+                if (interrupted)
+                    e.getValue().cancel(true);
+                loaded.put(e.getKey(), e.getValue().get());
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                failures.put(e.getKey(), asFailure(e.getKey(), cause));
+            } catch (InterruptedException | CancellationException ex) {
+                interrupted = true;
+                failures.put(e.getKey(), new IllegalStateException("Loading interrupted", ex));
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Checked exceptions can still be thrown by code that bypasses the
+     * compiler, e.g., through generic or bytecode tricks.
+     */
+    private RuntimeException asFailure(ID id, Throwable cause) {
+        if (cause instanceof RuntimeException)
+            return (RuntimeException) cause;
+        return new IllegalStateException("Cannot load " + id + ": " + cause, cause);
+    }
+
+    /**
+     * Resolves the stream names for several identities at once.
+     * 
+     * @param clazz  the type of the objects
+     * @param ids    the distinct identities
+     * @return the stream names by identity, in the order of {@code ids}
+     */
+    protected Map<ID, String> streamNamesFor(Class<T> clazz, Collection<? extends ID> ids) {
+        EventStreamNameGenerator<T, ID> generator = streamNameGenerator();
+        Map<ID, String> streamIds = new LinkedHashMap<>();
+        for (ID id : ids) {
+            Validate.notNull(id, "id must not be null");
+            streamIds.put(id, generator.streamNameFor(clazz, id));
+        }
+        return streamIds;
+    }
+
+    /**
+     * Gets the executor that loads the objects of a batch concurrently.
+     * Returns {@code null} by default, i.e., batches are loaded one object
+     * after the other in the calling thread.
+     * 
+     * @return the executor, or {@code null}
+     */
+    protected Executor batchLoadExecutor() {
+        return null;
+    }
+
     public void add(T obj, CID commitId) {
         Validate.notNull(obj, "object must not be null");
         String streamId = streamNameGenerator().streamNameFor(obj);
-        EventSourcingBus<Event> bus = busForAdd(streamId);
-        invokeStore(obj, bus);
-        bus.commit(commitId.toString());
+        try {
+            EventSourcingBus<Event> bus = busForAdd(streamId);
+            invokeStore(obj, bus);
+            bus.commit(commitId.toString());
+        } catch (RuntimeException e) {
+            commitFailed(streamId);
+            throw e;
+        }
+        committed(obj, streamId);
     }
 
     public void save(T obj, CID commitId) {
         Validate.notNull(obj, "object must not be null");
         String streamId = streamNameGenerator().streamNameFor(obj);
         long version = retrieveVersion(obj);
-        EventSourcingBus<Event> bus = busForSave(streamId, version);
-        invokeStore(obj, bus);
-        bus.commit(commitId.toString());
+        try {
+            EventSourcingBus<Event> bus = busForSave(streamId, version);
+            invokeStore(obj, bus);
+            bus.commit(commitId.toString());
+        } catch (RuntimeException e) {
+            commitFailed(streamId);
+            throw e;
+        }
+        committed(obj, streamId);
+    }
+
+    /**
+     * Loads an object, applies the mutation and saves the object.
+     * If saving fails with a {@link ConcurrencyConflictException}, the
+     * object is reloaded and the mutation is applied again, after a delay
+     * and up to the number of attempts given by the {@link #retryPolicy()}.
+     * The mutation must therefore be free of other side effects.
+     * <p>
+     * A retry deliberately starts from a freshly loaded object instead of
+     * catching up the object of the failed attempt: that object carries the
+     * uncommitted changes of the mutation and cannot be brought back to a
+     * persisted state.  The failed commit also evicts the stream from the
+     * {@link #aggregateCache()}, so the reload reads the event store,
+     * starting from the newest snapshot if a {@link #snapshotStore()} is
+     * configured, and replaying the full stream otherwise.
+     * <p>
+     * If {@link #writeLocks()} provides locks, each attempt holds the lock of
+     * the event stream, such that writers within this process do not
+     * conflict with each other.
+     * <p>
+     * The returned object stays checked out of the {@link #aggregateCache()}
+     * until the caller passes it to {@link #release}.
+     * 
+     * @param clazz     the type of the object
+     * @param id        the identity of the object
+     * @param commitId  the identity of the commit
+     * @param mutation  changes the object
+     * @return the saved object
+     * @throws ConcurrencyConflictException if the last attempt failed with a conflict
+     */
+    protected T execute(Class<T> clazz, ID id, CID commitId, Consumer<? super T> mutation) {
+        Validate.notNull(mutation, "mutation must not be null");
+        Validate.notNull(commitId, "commitId must not be null");
+        Validate.notNull(id, "id must not be null");
+        RetryPolicy policy = retryPolicy();
+        String streamId = streamNameGenerator().streamNameFor(clazz, id);
+        StripedLock locks = writeLocks();
+        for (int attempt = 1; ; attempt++) {
+            ConcurrencyConflictException conflict;
+            Lock lock = locks == null ? null : locks.lockFor(streamId);
+            if (lock != null)
+                lock.lock();
+            try {
+                T obj = load(clazz, id, streamId);
+                mutation.accept(obj);
+                save(obj, commitId);
+                return obj;
+            } catch (ConcurrencyConflictException e) {
+                conflict = e;
+            } finally {
+                if (lock != null)
+                    lock.unlock();
+            }
+            conflictStatistics.recordConflict(streamId);
+            if (attempt >= policy.maxAttempts()) {
+                conflictStatistics.recordExhausted();
+                throw conflict;
+            }
+            if (!backoff(policy.backoffMillis(attempt)))
+                throw conflict;
+            conflictStatistics.recordRetry();
+            log.log(Level.FINE, "Retrying {0}#{1} after conflict, attempt {2}",
+                    new Object[]{clazz.getSimpleName(), id, attempt + 1});
+        }
+    }
+
+    public T execute(ID id, CID commitId, Consumer<? super T> mutation) {
+        if (objectType == null)
+            throw new IllegalStateException("Cannot call #execute() without objectType");
+        return this.execute(objectType, id, commitId, mutation);
+    }
+
+    /**
+     * Gets the policy for retrying {@link #execute} after a conflict.
+     * 
+     * @return the retry policy, defaults to {@link RetryPolicy#defaults()}
+     */
+    protected RetryPolicy retryPolicy() {
+        return RetryPolicy.defaults();
+    }
+
+    /**
+     * Gets the locks that serialize the attempts of {@link #execute} per
+     * event stream within this process.  Returns {@code null} by default,
+     * i.e., concurrent writers rely on optimistic concurrency alone.
+     * The returned locks must be shared by all calls, e.g., kept in a field.
+     * 
+     * @return the locks, or {@code null}
+     */
+    protected StripedLock writeLocks() {
+        return null;
+    }
+
+    /**
+     * Gets the statistics of the concurrency conflicts met by
+     * {@link #execute}.
+     * 
+     * @return the statistics
+     */
+    public ConflictStatistics conflictStatistics() {
+        return conflictStatistics;
+    }
+
+    private static boolean backoff(long millis) {
+        if (millis <= 0)
+            return true;
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Creates a unit of work that commits several objects of this
+     * repository in one pass.
+     * 
+     * @return the new unit of work
+     */
+    public UnitOfWork<T, ID, CID> unitOfWork() {
+        return new UnitOfWork<>(this);
+    }
+
+    /**
+     * Creates an asynchronous view of this repository.
+     * 
+     * @param executor  the executor that runs the operations, see
+     *                  {@link RepositoryExecutors#newIoExecutor()}
+     * @return the asynchronous repository
+     */
+    public AsyncRepository<T, ID, CID> async(Executor executor) {
+        return new AsyncRepository<>(this, executor);
+    }
+
+    /**
+     * Gets a transaction that spans all commits of a {@link UnitOfWork}.
+     * Returns {@code null} by default, i.e., the streams of a unit of work
+     * are committed independently.
+     * 
+     * @return a new transaction, or {@code null}
+     */
+    protected BatchTransaction batchTransaction() {
+        return null;
+    }
+
+    /**
+     * Gets the filter that tells which event streams of this repository
+     * might exist.  Returns {@code null} by default, i.e., every existence
+     * check asks the event store.  See {@link StreamExistenceFilter} for
+     * how the filter must be seeded.
+     * 
+     * @return the filter, or {@code null}
+     */
+    protected StreamExistenceFilter existenceFilter() {
+        return null;
+    }
+
+    /**
+     * Tells whether the stream might exist according to the
+     * {@link #existenceFilter()}.  Subclasses use this to skip asking the
+     * event store for streams that definitely do not exist.
+     * 
+     * @param streamId  the name of the event stream
+     * @return {@code false} if the stream definitely does not exist
+     */
+    protected boolean mightExist(String streamId) {
+        StreamExistenceFilter filter = existenceFilter();
+        return filter == null || filter.mightExist(streamId);
+    }
+
+    // called after the changes of obj have been committed to its stream
+    void committed(T obj, String streamId) {
+        StreamExistenceFilter filter = existenceFilter();
+        if (filter != null)
+            filter.add(streamId);
+        takeSnapshot(obj, streamId);
+    }
+
+    /**
+     * Hands a loaded or saved object back to the repository, which puts it
+     * into the {@link #aggregateCache()}, if there is one.  The caller must
+     * not use the object afterwards, since the next {@link #ofIdentity} call
+     * for the same stream may hand it out to another caller.  Objects with
+     * unsaved changes, e.g., because saving them failed, must not be
+     * released but dropped.
+     * 
+     * @param obj  the object without unsaved changes
+     */
+    public void release(T obj) {
+        Validate.notNull(obj, "object must not be null");
+        AggregateCache<T> cache = aggregateCache();
+        if (cache == null)
+            return;
+        String streamId = streamNameGenerator().streamNameFor(obj);
+        cache.checkin(streamId, obj, retrieveVersion(obj));
+    }
+
+    // called after committing to the stream failed
+    void commitFailed(String streamId) {
+        invalidateCached(streamId);
+    }
+
+    /**
+     * Brings a loaded object up to the newest version of its event stream,
+     * applying only the events it has not seen yet.
+     * 
+     * @param obj  the object to refresh, must not have unsaved changes
+     */
+    public void refresh(T obj) {
+        Validate.notNull(obj, "object must not be null");
+        String streamId = streamNameGenerator().streamNameFor(obj);
+        catchUpFromStream(obj, streamId);
+    }
+
+    /**
+     * Applies the events of the stream that the object has not seen yet.
+     * The default implementation does not support catching up.
+     * 
+     * @param obj       the loaded object
+     * @param streamId  the name of the event stream
+     */
+    protected void catchUpFromStream(T obj, String streamId) {
+        throw new UnsupportedOperationException(this.getClass() + " cannot catch up objects");
+    }
+
+    /**
+     * Tells whether cached objects catch up with their event stream before
+     * they are handed out.  Defaults to {@code false}, which is correct if
+     * only this repository writes to the streams.
+     * 
+     * @return whether to catch up cached objects
+     */
+    protected boolean catchUpCachedObjects() {
+        return false;
+    }
+
+    /**
+     * Loads the object from the events that follow the given snapshot.
+     * Subclasses that can read the tail of an event stream should override
+     * this method, the default implementation ignores the snapshot and
+     * replays the whole stream.
+     * 
+     * @param obj       the fresh object to load
+     * @param streamId  the name of the event stream
+     * @param snapshot  the newest snapshot of the stream
+     */
+    protected void loadFromStream(T obj, String streamId, Snapshot snapshot) {
+        loadFromStream(obj, streamId);
+    }
+
+    /**
+     * Gets the store for snapshots of the objects of this repository.
+     * Returns {@code null} by default, i.e., snapshots are disabled.
+     * 
+     * @return the snapshot store, or {@code null}
+     */
+    protected SnapshotStore snapshotStore() {
+        return null;
+    }
+
+    /**
+     * Gets the policy that decides when to capture a new snapshot.
+     * Defaults to a snapshot every 100 events.
+     * 
+     * @return the snapshot policy
+     */
+    protected SnapshotPolicy snapshotPolicy() {
+        return DEFAULT_SNAPSHOT_POLICY;
+    }
+
+    /**
+     * Gets the cache for loaded objects of this repository.
+     * Returns {@code null} by default, i.e., objects are not cached.
+     * 
+     * @return the cache, or {@code null}
+     */
+    protected AggregateCache<T> aggregateCache() {
+        return null;
+    }
+
+    private T checkoutCached(Class<T> clazz, String streamId) {
+        AggregateCache<T> cache = aggregateCache();
+        if (cache == null)
+            return null;
+        T obj = cache.checkout(streamId);
+        return clazz.isInstance(obj) ? obj : null;
+    }
+
+    private T catchUpCached(T obj, String streamId) {
+        try {
+            catchUpFromStream(obj, streamId);
+            return obj;
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Cannot catch up cached entity of stream " + streamId + ", reloading", e);
+            return null;
+        }
+    }
+
+    private void invalidateCached(String streamId) {
+        AggregateCache<T> cache = aggregateCache();
+        if (cache != null)
+            cache.invalidate(streamId);
+    }
+
+    private Snapshot loadSnapshot(Class<T> clazz, String streamId) {
+        SnapshotStore store = snapshotStore();
+        if (store == null || !EventSourcingUtil.supportsSnapshots(clazz))
+            return null;
+        try {
+            return store.latest(streamId);
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Cannot load snapshot of stream " + streamId + ", replaying all events", e);
+            return null;
+        }
+    }
+
+    private void takeSnapshot(T obj, String streamId) {
+        SnapshotStore store = snapshotStore();
+        if (store == null || !EventSourcingUtil.supportsSnapshots(obj.getClass()))
+            return;
+        try {
+            Snapshot snapshot = EventSourcingUtil.captureSnapshot(obj, snapshotPolicy());
+            if (snapshot != null)
+                store.save(streamId, snapshot);
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Cannot take snapshot of stream " + streamId, e);
+        }
     }
 
     private void invokeStore(T obj, EventSourcingBus<Event> bus) {
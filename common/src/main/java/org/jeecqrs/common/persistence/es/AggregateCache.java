@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.jeecqrs.common.util.Validate;
+
+/**
+ * A bounded cache of loaded event sourced objects, keyed by stream name and
+ * stamped with the persisted version of the object.
+ * <p>
+ * The cache uses checkout semantics: {@link #checkout} removes the object
+ * from the cache, such that only one caller at a time works with a cached
+ * instance.  The repository puts the object back with {@link #checkin}
+ * once the caller has released it, and {@link #invalidate}s the entry
+ * when saving fails.
+ * <p>
+ * The cache holds at most {@code maxWeight} worth of objects, as measured
+ * by the {@link Weigher}, and evicts the least recently used objects first.
+ * By default, each object weighs {@code 1}, i.e., the maximum weight is the
+ * maximum number of objects.
+ * 
+ * @param <T>  the type of the cached objects
+ */
+public class AggregateCache<T> {
+
+    /**
+     * Estimates the weight of a cached object, e.g., its size in bytes.
+     * 
+     * @param <T>  the type of the cached objects
+     */
+    public interface Weigher<T> {
+        long weigh(T obj);
+    }
+
+    private static final Weigher<Object> UNIT_WEIGHER = new Weigher<Object>() {
+        @Override
+        public long weigh(Object obj) {
+            return 1;
+        }
+    };
+
+    private final long maxWeight;
+    private final Weigher<? super T> weigher;
+    private final LinkedHashMap<String, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long weight = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    public AggregateCache(int maxEntries) {
+        this(maxEntries, UNIT_WEIGHER);
+    }
+
+    public AggregateCache(long maxWeight, Weigher<? super T> weigher) {
+        Validate.isTrue(maxWeight > 0, "maxWeight must be positive");
+        Validate.notNull(weigher, "weigher must not be null");
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Takes the object for the given stream out of the cache.
+     * 
+     * @param streamId  the name of the event stream
+     * @return the cached object, or {@code null} if there is none
+     */
+    public synchronized T checkout(String streamId) {
+        Validate.notNull(streamId, "streamId must not be null");
+        Entry<T> entry = entries.remove(streamId);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        weight -= entry.weight;
+        return entry.obj;
+    }
+
+    /**
+     * Puts an object whose state matches the given persisted version into
+     * the cache.  If the cache already holds a newer version, the object
+     * is dropped.
+     * 
+     * @param streamId  the name of the event stream
+     * @param obj       the object without unsaved changes
+     * @param version   the persisted version of the object
+     */
+    public synchronized void checkin(String streamId, T obj, long version) {
+        Validate.notNull(streamId, "streamId must not be null");
+        Validate.notNull(obj, "obj must not be null");
+        Entry<T> current = entries.get(streamId);
+        if (current != null && current.version >= version)
+            return;
+        Entry<T> entry = new Entry<>(obj, version, weigher.weigh(obj));
+        if (current != null)
+            weight -= current.weight;
+        entries.put(streamId, entry);
+        weight += entry.weight;
+        evictExcess();
+    }
+
+    /**
+     * Removes the object for the given stream from the cache, e.g., because
+     * it is known to be stale.
+     * 
+     * @param streamId  the name of the event stream
+     */
+    public synchronized void invalidate(String streamId) {
+        Validate.notNull(streamId, "streamId must not be null");
+        Entry<T> entry = entries.remove(streamId);
+        if (entry != null) {
+            weight -= entry.weight;
+            invalidations++;
+        }
+    }
+
+    public synchronized void clear() {
+        invalidations += entries.size();
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized AggregateCacheStats stats() {
+        return new AggregateCacheStats(hits, misses, evictions, invalidations,
+                entries.size(), weight, maxWeight);
+    }
+
+    private void evictExcess() {
+        Iterator<Map.Entry<String, Entry<T>>> it = entries.entrySet().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            weight -= it.next().getValue().weight;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static final class Entry<T> {
+        final T obj;
+        final long version;
+        final long weight;
+        Entry(T obj, long version, long weight) {
+            this.obj = obj;
+            this.version = version;
+            this.weight = weight;
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+/**
+ * Statistics of an {@link AggregateCache} at a point in time.
+ */
+public final class AggregateCacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    private final int size;
+    private final long weight;
+    private final long maxWeight;
+
+    public AggregateCacheStats(long hits, long misses, long evictions, long invalidations,
+            int size, long weight, long maxWeight) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.size = size;
+        this.weight = weight;
+        this.maxWeight = maxWeight;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * Gets the ratio of checkouts that found a cached object.
+     * 
+     * @return the hit rate between {@code 0} and {@code 1}, or {@code 0}
+     *         if there were no checkouts yet
+     */
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    /**
+     * Gets the number of objects removed to stay within the maximum weight.
+     * 
+     * @return the number of evictions
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the number of objects removed because they were stale.
+     * 
+     * @return the number of invalidations
+     */
+    public long invalidations() {
+        return invalidations;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the total weight of the cached objects, e.g., their estimated
+     * size in bytes.
+     * 
+     * @return the total weight
+     */
+    public long weight() {
+        return weight;
+    }
+
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public String toString() {
+        return "AggregateCacheStats{" + "hits=" + hits + ", misses=" + misses +
+                ", hitRate=" + hitRate() + ", evictions=" + evictions +
+                ", invalidations=" + invalidations + ", size=" + size +
+                ", weight=" + weight + "/" + maxWeight + '}';
+    }
+
+}
@@ -21,8 +21,6 @@
 
 package org.jeecqrs.common.persistence.es;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import org.jeecqrs.common.Identifiable;
 import org.jeecqrs.common.Identity;
 
@@ -35,36 +33,31 @@ import org.jeecqrs.common.Identity;
 public class AnnotationEventStreamNameGenerator<T extends Identifiable<ID>, ID>
         implements EventStreamNameGenerator<T, ID> {
  
-    private static final Map<Class, String> streamNameCache = new ConcurrentHashMap<>();
-
-    @Override
-    public String streamNameFor(T obj) {
-        return streamNameFor((Class) obj.getClass(), obj.id());
-    }
-    
-    @Override
-    public String streamNameFor(Class<? extends T> clazz, ID id) {
-        // no need to synchronize cache access, since result is deterministic
-	String name = streamNameCache.get(clazz);
-	if (name == null) {
+    private static final ClassValue<String> prefixes = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> clazz) {
 	    EventStreamName annotation = clazz.getAnnotation(EventStreamName.class);
 	    if (annotation == null)
 		throw new IllegalArgumentException(
 			"Class " + clazz.getCanonicalName() + " misses required " +
 			EventStreamName.class.getCanonicalName() + " annotation");
-            name = annotation.value();
+            String name = annotation.value();
 	    if (name == null || name.trim().equals(""))
 		throw new IllegalArgumentException(
 			"Class " + clazz.getCanonicalName() + " has invalid " +
 			EventStreamName.class.getCanonicalName() + " annotation: " + annotation.value());
-	    name = name.trim();
-	    streamNameCache.put(clazz, name);
-	}
-        return new StringBuilder()
-		.append(name)
-		.append(":")
-		.append(id.toString())
-		.toString();
+	    return name.trim() + ":";
+        }
+    };
+
+    @Override
+    public String streamNameFor(T obj) {
+        return streamNameFor((Class) obj.getClass(), obj.id());
+    }
+    
+    @Override
+    public String streamNameFor(Class<? extends T> clazz, ID id) {
+        return prefixes.get(clazz).concat(id.toString());
     }
 
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import org.jeecqrs.common.util.Validate;
+
+/**
+ * Runs the operations of a repository on an executor and returns their
+ * results as {@link CompletableFuture}s, such that callers can overlap
+ * loads of independent objects instead of waiting for each of them.
+ * <p>
+ * Writes to the same event stream ({@link #add} and {@link #save}) are
+ * run in the order they were submitted, one after the other, even if an
+ * earlier write failed.  Writes to different streams and all reads run
+ * concurrently.
+ * 
+ * @param <T>  the entity type
+ * @param <ID>  the type used to identify entities
+ * @param <CID>  the type used to identify commits
+ */
+public class AsyncRepository<T, ID, CID> {
+
+    private final AbstractEventSourcingRepository<T, ID, CID> repository;
+    private final Executor executor;
+    // the last pending write per stream
+    private final ConcurrentMap<String, CompletableFuture<Void>> pendingWrites = new ConcurrentHashMap<>();
+
+    public AsyncRepository(AbstractEventSourcingRepository<T, ID, CID> repository, Executor executor) {
+        Validate.notNull(repository, "repository must not be null");
+        Validate.notNull(executor, "executor must not be null");
+        this.repository = repository;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<T> ofIdentity(ID id) {
+        Validate.notNull(id, "id must not be null");
+        return CompletableFuture.supplyAsync(() -> repository.ofIdentity(id), executor);
+    }
+
+    public CompletableFuture<BatchLoadResult<ID, T>> ofIdentities(Collection<? extends ID> ids) {
+        Validate.notNull(ids, "ids must not be null");
+        return CompletableFuture.supplyAsync(() -> repository.ofIdentities(ids), executor);
+    }
+
+    public CompletableFuture<Boolean> exists(ID id) {
+        Validate.notNull(id, "id must not be null");
+        return CompletableFuture.supplyAsync(() -> repository.exists(id), executor);
+    }
+
+    public CompletableFuture<Void> add(T obj, CID commitId) {
+        Validate.notNull(obj, "object must not be null");
+        return write(obj, () -> repository.add(obj, commitId));
+    }
+
+    public CompletableFuture<Void> save(T obj, CID commitId) {
+        Validate.notNull(obj, "object must not be null");
+        return write(obj, () -> repository.save(obj, commitId));
+    }
+
+    /**
+     * Gets the number of streams with pending writes.
+     * 
+     * @return the number of streams
+     */
+    public int pendingStreams() {
+        return pendingWrites.size();
+    }
+
+    private CompletableFuture<Void> write(T obj, Runnable task) {
+        String streamId = repository.streamNameGenerator().streamNameFor(obj);
+        CompletableFuture<Void> write = pendingWrites.compute(streamId, (key, previous) -> previous == null
+                ? CompletableFuture.runAsync(task, executor)
+                : previous.handle((result, failure) -> null).thenRunAsync(task, executor));
+        // callers see the write completed only after it is no longer pending
+        return write.whenComplete((result, failure) -> pendingWrites.remove(streamId, write));
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The result of loading several objects at once.
+ * Objects that could not be loaded are reported separately with the
+ * exception that occurred, such that one failure does not prevent the
+ * other objects from being loaded.
+ * 
+ * @param <ID>  the type used to identify objects
+ * @param <T>   the type of the objects
+ */
+public final class BatchLoadResult<ID, T> {
+
+    private final Map<ID, T> loaded;
+    private final Map<ID, RuntimeException> failures;
+
+    public BatchLoadResult(Map<ID, T> loaded, Map<ID, RuntimeException> failures) {
+        this.loaded = Collections.unmodifiableMap(loaded);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Gets the loaded objects, in the order of the requested identities.
+     * 
+     * @return the objects by identity
+     */
+    public Map<ID, T> loaded() {
+        return loaded;
+    }
+
+    /**
+     * Gets the failures, in the order of the requested identities.
+     * 
+     * @return the exceptions by identity
+     */
+    public Map<ID, RuntimeException> failures() {
+        return failures;
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    public T get(ID id) {
+        return loaded.get(id);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchLoadResult{" + "loaded=" + loaded.keySet() + ", failures=" + failures.keySet() + '}';
+    }
+
+}
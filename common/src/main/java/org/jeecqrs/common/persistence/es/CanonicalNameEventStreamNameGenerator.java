@@ -32,6 +32,14 @@ import org.jeecqrs.common.Identifiable;
 public class CanonicalNameEventStreamNameGenerator<T extends Identifiable<ID>, ID>
         implements EventStreamNameGenerator<T, ID> {
 
+    // getCanonicalName() walks the enclosing classes and allocates on every call
+    private static final ClassValue<String> prefixes = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return type.getCanonicalName() + ":";
+        }
+    };
+
     @Override
     public String streamNameFor(T obj) {
         return streamNameFor((Class) obj.getClass(), obj.id());
@@ -39,11 +47,7 @@ public class CanonicalNameEventStreamNameGenerator<T extends Identifiable<ID>, I
  
     @Override
     public String streamNameFor(Class<? extends T> clazz, ID id) {
-        return new StringBuilder()
-		.append(clazz.getCanonicalName())
-		.append(":")
-		.append(id.toString())
-		.toString();
+        return prefixes.get(clazz).concat(id.toString());
     }
 
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.jeecqrs.common.util.Validate;
+
+/**
+ * Counts concurrency conflicts per event stream, to find hot objects.
+ * At most {@code maxStreams} streams are tracked individually, conflicts
+ * on further streams only count towards the total.
+ */
+public class ConflictStatistics {
+
+    private final int maxStreams;
+    private final ConcurrentMap<String, LongAdder> conflicts = new ConcurrentHashMap<>();
+    private final LongAdder total = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    public ConflictStatistics() {
+        this(10000);
+    }
+
+    public ConflictStatistics(int maxStreams) {
+        Validate.isTrue(maxStreams > 0, "maxStreams must be positive");
+        this.maxStreams = maxStreams;
+    }
+
+    public void recordConflict(String streamId) {
+        Validate.notNull(streamId, "streamId must not be null");
+        total.increment();
+        LongAdder counter = conflicts.get(streamId);
+        if (counter == null && conflicts.size() < maxStreams)
+            counter = conflicts.computeIfAbsent(streamId, k -> new LongAdder());
+        if (counter != null)
+            counter.increment();
+    }
+
+    public void recordRetry() {
+        retries.increment();
+    }
+
+    public void recordExhausted() {
+        exhausted.increment();
+    }
+
+    public long conflictsFor(String streamId) {
+        LongAdder counter = conflicts.get(streamId);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public long totalConflicts() {
+        return total.sum();
+    }
+
+    public long retries() {
+        return retries.sum();
+    }
+
+    /**
+     * Gets the number of operations that gave up after the maximum number
+     * of attempts.
+     * 
+     * @return the number of exhausted operations
+     */
+    public long exhausted() {
+        return exhausted.sum();
+    }
+
+    /**
+     * Gets the streams with the most conflicts.
+     * 
+     * @param n  the maximum number of streams to return
+     * @return stream names and their conflict counts, most conflicts first
+     */
+    public List<Map.Entry<String, Long>> hottest(int n) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> e : conflicts.entrySet())
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue().sum()));
+        Collections.sort(entries, (a, b) -> Long.compare(b.getValue(), a.getValue()));
+        return entries.subList(0, Math.min(n, entries.size()));
+    }
+
+    public void reset() {
+        conflicts.clear();
+        total.reset();
+        retries.reset();
+        exhausted.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "ConflictStatistics{" + "totalConflicts=" + totalConflicts() + ", retries=" + retries() +
+                ", exhausted=" + exhausted() + ", hottest=" + hottest(5) + '}';
+    }
+
+}
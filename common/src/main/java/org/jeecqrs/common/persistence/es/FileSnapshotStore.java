@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import org.jeecqrs.common.event.sourcing.Snapshot;
+import org.jeecqrs.common.util.Validate;
+
+/**
+ * Keeps snapshots as serialized files in a directory, one file per
+ * event stream.
+ * Snapshots are written to a temporary file first and then moved into
+ * place, such that readers never see a partially written snapshot.
+ */
+public class FileSnapshotStore implements SnapshotStore {
+
+    private static final String SUFFIX = ".snapshot";
+
+    private final Path directory;
+
+    public FileSnapshotStore(Path directory) {
+        Validate.notNull(directory, "directory must not be null");
+        this.directory = directory;
+    }
+
+    @Override
+    public Snapshot latest(String streamId) {
+        Path file = fileFor(streamId);
+        try (InputStream in = Files.newInputStream(file);
+                ObjectInputStream ois = new ObjectInputStream(in)) {
+            return (Snapshot) ois.readObject();
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            String msg = String.format("Cannot read snapshot of stream %s from %s: %s",
+                    streamId, file, e.getMessage());
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    @Override
+    public synchronized void save(String streamId, Snapshot snapshot) {
+        Validate.notNull(snapshot, "snapshot must not be null");
+        Snapshot current = latest(streamId);
+        if (current != null && current.eventCount() >= snapshot.eventCount())
+            return;
+        Path file = fileFor(streamId);
+        Path tmp = null;
+        try {
+            Files.createDirectories(directory);
+            tmp = Files.createTempFile(directory, "snapshot", ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp);
+                    ObjectOutputStream oos = new ObjectOutputStream(out)) {
+                oos.writeObject(snapshot);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            String msg = String.format("Cannot write snapshot of stream %s to %s: %s",
+                    streamId, file, e.getMessage());
+            throw new RuntimeException(msg, e);
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    private Path fileFor(String streamId) {
+        Validate.notNull(streamId, "streamId must not be null");
+        try {
+            return directory.resolve(URLEncoder.encode(streamId, "UTF-8") + SUFFIX);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null)
+            return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // the temporary file is left behind
+        }
+    }
+
+}
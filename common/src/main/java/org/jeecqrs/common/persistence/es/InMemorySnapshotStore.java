@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.jeecqrs.common.event.sourcing.Snapshot;
+import org.jeecqrs.common.util.Validate;
+
+/**
+ * Keeps snapshots in memory.
+ * The snapshots are lost when the store is discarded.
+ */
+public class InMemorySnapshotStore implements SnapshotStore {
+
+    private final ConcurrentMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    @Override
+    public Snapshot latest(String streamId) {
+        Validate.notNull(streamId, "streamId must not be null");
+        return snapshots.get(streamId);
+    }
+
+    @Override
+    public void save(String streamId, Snapshot snapshot) {
+        Validate.notNull(streamId, "streamId must not be null");
+        Validate.notNull(snapshot, "snapshot must not be null");
+        for (;;) {
+            Snapshot current = snapshots.putIfAbsent(streamId, snapshot);
+            if (current == null || current.eventCount() >= snapshot.eventCount())
+                return;
+            if (snapshots.replace(streamId, current, snapshot))
+                return;
+        }
+    }
+
+    public void clear() {
+        snapshots.clear();
+    }
+
+}
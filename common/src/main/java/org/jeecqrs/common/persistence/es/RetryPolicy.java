@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+import java.util.concurrent.ThreadLocalRandom;
+import org.jeecqrs.common.util.Validate;
+
+/**
+ * Decides how often and after which delay an operation is retried after a
+ * {@link ConcurrencyConflictException}.
+ * The delay grows exponentially with each attempt, up to a maximum, and is
+ * randomized ("full jitter"), such that competing writers do not retry in
+ * lock step.
+ */
+public final class RetryPolicy {
+
+    private static final RetryPolicy NO_RETRY = new RetryPolicy(1, 0, 0);
+    private static final RetryPolicy DEFAULT = new RetryPolicy(5, 10, 1000);
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * Creates a new retry policy.
+     * 
+     * @param maxAttempts           the maximum number of attempts, including the first one
+     * @param initialBackoffMillis  the maximum delay before the first retry
+     * @param maxBackoffMillis      the upper bound of the delay before any retry
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        Validate.isTrue(maxAttempts > 0, "maxAttempts must be positive");
+        Validate.isTrue(initialBackoffMillis >= 0, "initialBackoffMillis must not be negative");
+        Validate.isTrue(maxBackoffMillis >= initialBackoffMillis,
+                "maxBackoffMillis must not be less than initialBackoffMillis");
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Never retries.
+     * 
+     * @return the policy
+     */
+    public static RetryPolicy noRetry() {
+        return NO_RETRY;
+    }
+
+    /**
+     * Tries up to 5 times, waiting up to 10 ms before the first retry and
+     * at most 1 s before any retry.
+     * 
+     * @return the policy
+     */
+    public static RetryPolicy defaults() {
+        return DEFAULT;
+    }
+
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Computes the delay before the next attempt.
+     * 
+     * @param failedAttempts  the number of attempts that failed so far
+     * @return the delay in milliseconds
+     */
+    public long backoffMillis(int failedAttempts) {
+        Validate.isTrue(failedAttempts > 0, "failedAttempts must be positive");
+        if (initialBackoffMillis == 0)
+            return 0;
+        long bound = initialBackoffMillis;
+        for (int i = 1; i < failedAttempts && bound < maxBackoffMillis; i++)
+            bound *= 2;
+        bound = Math.min(bound, maxBackoffMillis);
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{" + "maxAttempts=" + maxAttempts + ", initialBackoffMillis=" +
+                initialBackoffMillis + ", maxBackoffMillis=" + maxBackoffMillis + '}';
+    }
+
+}
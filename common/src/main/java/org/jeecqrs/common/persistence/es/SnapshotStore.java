@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+import org.jeecqrs.common.event.sourcing.Snapshot;
+
+/**
+ * Stores the newest {@link Snapshot} of event streams.
+ */
+public interface SnapshotStore {
+
+    /**
+     * Gets the newest snapshot of the given event stream.
+     * 
+     * @param streamId  the name of the event stream
+     * @return the snapshot, or {@code null} if there is none
+     */
+    Snapshot latest(String streamId);
+
+    /**
+     * Stores a snapshot of the given event stream.
+     * Snapshots that cover fewer events than the stored one are ignored.
+     * 
+     * @param streamId  the name of the event stream
+     * @param snapshot  the snapshot to store
+     */
+    void save(String streamId, Snapshot snapshot);
+
+}
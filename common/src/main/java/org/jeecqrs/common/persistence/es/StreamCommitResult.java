@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+/**
+ * The outcome of committing the changes of one object to its event stream.
+ */
+public final class StreamCommitResult {
+
+    private final String streamId;
+    private final int eventCount;
+    private final RuntimeException failure;
+
+    public StreamCommitResult(String streamId, int eventCount, RuntimeException failure) {
+        this.streamId = streamId;
+        this.eventCount = eventCount;
+        this.failure = failure;
+    }
+
+    public String streamId() {
+        return streamId;
+    }
+
+    /**
+     * Gets the number of events in the commit.
+     * 
+     * @return the number of events
+     */
+    public int eventCount() {
+        return eventCount;
+    }
+
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    /**
+     * Gets the reason why the commit failed.
+     * 
+     * @return the failure, or {@code null} if the commit succeeded
+     */
+    public RuntimeException failure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamCommitResult{" + "streamId=" + streamId + ", eventCount=" + eventCount +
+                (failure == null ? "" : ", failure=" + failure) + '}';
+    }
+
+}
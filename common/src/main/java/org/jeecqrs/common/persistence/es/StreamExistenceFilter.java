@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+
+package org.jeecqrs.common.persistence.es;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.jeecqrs.common.util.Validate;
+
+/**
+ * A Bloom filter over event stream names that answers whether a stream
+ * might exist without asking the event store.
+ * A negative answer is definite, a positive answer may be wrong with about
+ * the false positive rate given at construction, as long as no more than
+ * the expected number of streams have been added.
+ * <p>
+ * The filter only knows the streams it has been told about.  It must be
+ * seeded with the names of all streams that already exist in the bucket,
+ * after which the application calls {@link #markSeeded()}.  Until then,
+ * the filter answers that every stream might exist, so that an unseeded
+ * filter never hides existing streams.  All streams created afterwards
+ * must be added, which the repository does for streams it creates itself.
+ * Streams created by other processes are missed, so the filter is only
+ * correct if this process is the only one creating streams in the bucket.
+ * <p>
+ * This class is thread-safe and does not lock.
+ */
+public final class StreamExistenceFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+    private volatile boolean seeded = false;
+
+    /**
+     * Creates a new, empty filter that is not seeded yet.
+     * 
+     * @param expectedStreams    the number of streams the filter is sized for
+     * @param falsePositiveRate  the desired false positive rate, between 0 and 1 (exclusive)
+     */
+    public StreamExistenceFilter(long expectedStreams, double falsePositiveRate) {
+        Validate.isTrue(expectedStreams > 0, "expectedStreams must be positive");
+        Validate.isTrue(falsePositiveRate > 0 && falsePositiveRate < 1,
+                "falsePositiveRate must be between 0 and 1");
+        long m = (long) Math.ceil(-expectedStreams * Math.log(falsePositiveRate) / (LN2 * LN2));
+        long wordCount = Math.max(1, (m + 63) >>> 6);
+        Validate.isTrue(wordCount <= Integer.MAX_VALUE, "filter too large");
+        this.words = new AtomicLongArray((int) wordCount);
+        this.bits = wordCount << 6;
+        this.hashes = (int) Math.max(1, Math.min(16, Math.round((double) bits / expectedStreams * LN2)));
+    }
+
+    /**
+     * Tells whether the stream might exist.
+     * Always returns {@code true} until the filter has been seeded.
+     * 
+     * @param streamId  the name of the stream
+     * @return {@code false} if the stream definitely does not exist
+     */
+    public boolean mightExist(String streamId) {
+        long hash = hash(streamId);
+        if (!seeded)
+            return true;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long bit = index(h1, h2, i);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records that the stream exists.
+     * 
+     * @param streamId  the name of the stream
+     */
+    public void add(String streamId) {
+        long hash = hash(streamId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long bit = index(h1, h2, i);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = words.get(word);
+                if ((current & mask) != 0)
+                    break;
+            } while (!words.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    /**
+     * Records that the streams exist, e.g., to seed the filter with the
+     * streams of a bucket.
+     * 
+     * @param streamIds  the names of the streams
+     */
+    public void addAll(Iterable<String> streamIds) {
+        for (String streamId : streamIds)
+            add(streamId);
+    }
+
+    /**
+     * Marks the filter as seeded, i.e., all streams that existed in the
+     * bucket before the filter was created have been added.  From now on,
+     * the filter answers that unknown streams do not exist.  A filter for
+     * an empty bucket is marked as seeded right away.
+     */
+    public void markSeeded() {
+        this.seeded = true;
+    }
+
+    /**
+     * Tells whether the filter has been seeded.
+     * 
+     * @return whether {@link #markSeeded()} has been called
+     */
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * Gets the size of the filter in bits.
+     * 
+     * @return the number of bits
+     */
+    public long bitSize() {
+        return bits;
+    }
+
+    /**
+     * Gets the number of bits set per stream.
+     * 
+     * @return the number of hash functions
+     */
+    public int hashCount() {
+        return hashes;
+    }
+
+    private long index(int h1, int h2, int i) {
+        // double hashing, see Kirsch and Mitzenmacher
+        long combined = (h1 + (long) i * h2) & Long.MAX_VALUE;
+        return combined % bits;
+    }
+
+    private static long hash(String s) {
+        Validate.notNull(s, "streamId must not be null");
+        // FNV-1a over the chars, followed by the murmur3 finalizer
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= (h >>> 33);
+        return h;
+    }
+
+}
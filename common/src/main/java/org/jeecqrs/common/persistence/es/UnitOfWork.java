@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jeecqrs.common.event.Event;
+import org.jeecqrs.common.event.sourcing.EventSourcingBus;
+import org.jeecqrs.common.event.sourcing.EventSourcingUtil;
+import org.jeecqrs.common.util.Validate;
+
+/**
+ * Collects new and changed objects of a repository and commits their
+ * changes in one pass.
+ * <p>
+ * On {@link #commit}, the changes of all registered objects are obtained
+ * from their {@code @Store} methods first, then each event stream is
+ * written.  If the repository provides a {@link BatchTransaction}, all
+ * streams are committed in that transaction and either all or none of
+ * them succeed.  Otherwise each stream is committed on its own, and a
+ * failing stream does not prevent the others from being committed.
+ * Objects whose commit failed must be discarded, like after a failed
+ * {@link AbstractEventSourcingRepository#save}.
+ * <p>
+ * The event store still sees one write per event stream, i.e., opening
+ * the stream, appending the events and committing them, since JEEventStore
+ * cannot commit to several streams at once.  What a unit of work saves
+ * is one transaction per object when the repository provides a
+ * {@link BatchTransaction}, and the events of each stream are handed to
+ * the store in one {@link EventSourcingBus#storeAll} call.
+ * <p>
+ * A unit of work is meant to be used by a single thread.
+ * 
+ * @param <T>  the entity type
+ * @param <ID>  the type used to identify entities
+ * @param <CID>  the type used to identify commits
+ */
+public class UnitOfWork<T, ID, CID> {
+
+    private final AbstractEventSourcingRepository<T, ID, CID> repository;
+    private final List<Registration<T>> registrations = new ArrayList<>();
+
+    public UnitOfWork(AbstractEventSourcingRepository<T, ID, CID> repository) {
+        Validate.notNull(repository, "repository must not be null");
+        this.repository = repository;
+    }
+
+    /**
+     * Registers an object whose event stream does not exist yet.
+     * 
+     * @param obj  the new object
+     */
+    public void registerNew(T obj) {
+        register(obj, true);
+    }
+
+    /**
+     * Registers a loaded object that has changes.
+     * 
+     * @param obj  the changed object
+     */
+    public void registerDirty(T obj) {
+        register(obj, false);
+    }
+
+    public int size() {
+        return registrations.size();
+    }
+
+    /**
+     * Commits the changes of all registered objects and clears the
+     * registrations.
+     * 
+     * @param commitId  the identity of the commit, used for every stream
+     * @return the result per event stream
+     */
+    public UnitOfWorkResult commit(CID commitId) {
+        Validate.notNull(commitId, "commitId must not be null");
+        List<Pending<T>> pending = new ArrayList<>(registrations.size());
+        for (Registration<T> r : registrations)
+            pending.add(collect(r));
+        registrations.clear();
+        BatchTransaction tx = repository.batchTransaction();
+        if (tx == null)
+            return commitEach(pending, commitId.toString());
+        return commitAtomically(pending, commitId.toString(), tx);
+    }
+
+    private void register(T obj, boolean isNew) {
+        Validate.notNull(obj, "object must not be null");
+        for (Registration<T> r : registrations) {
+            if (r.obj == obj) {
+                Validate.isTrue(r.isNew == isNew, "object registered as both new and dirty");
+                return;
+            }
+        }
+        registrations.add(new Registration<>(obj, isNew));
+    }
+
+    private Pending<T> collect(Registration<T> r) {
+        String streamId = repository.streamNameGenerator().streamNameFor(r.obj);
+        long version = repository.retrieveVersion(r.obj);
+        List<Event> events = new ArrayList<>();
+        EventSourcingUtil.transferChanges(r.obj, events);
+        return new Pending<>(r, streamId, version, events);
+    }
+
+    private UnitOfWorkResult commitEach(List<Pending<T>> pending, String commitId) {
+        List<StreamCommitResult> results = new ArrayList<>(pending.size());
+        for (Pending<T> p : pending) {
+            try {
+                write(p, commitId);
+                repository.committed(p.registration.obj, p.streamId);
+                results.add(new StreamCommitResult(p.streamId, p.events.size(), null));
+            } catch (RuntimeException e) {
+                repository.commitFailed(p.streamId);
+                results.add(new StreamCommitResult(p.streamId, p.events.size(), e));
+            }
+        }
+        return new UnitOfWorkResult(results);
+    }
+
+    private UnitOfWorkResult commitAtomically(List<Pending<T>> pending, String commitId, BatchTransaction tx) {
+        Pending<T> current = null;
+        try {
+            tx.begin();
+            try {
+                for (Pending<T> p : pending) {
+                    current = p;
+                    write(p, commitId);
+                }
+                current = null;
+            } catch (RuntimeException e) {
+                rollback(tx, e);
+                throw e;
+            }
+            tx.commit();
+        } catch (RuntimeException e) {
+            return failAll(pending, current, e);
+        }
+        List<StreamCommitResult> results = new ArrayList<>(pending.size());
+        for (Pending<T> p : pending) {
+            repository.committed(p.registration.obj, p.streamId);
+            results.add(new StreamCommitResult(p.streamId, p.events.size(), null));
+        }
+        return new UnitOfWorkResult(results);
+    }
+
+    // keeps the failure that caused the rollback as the reported one
+    private static void rollback(BatchTransaction tx, RuntimeException cause) {
+        try {
+            tx.rollback();
+        } catch (RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private UnitOfWorkResult failAll(List<Pending<T>> pending, Pending<T> culprit, RuntimeException cause) {
+        List<StreamCommitResult> results = new ArrayList<>(pending.size());
+        for (Pending<T> p : pending) {
+            repository.commitFailed(p.streamId);
+            RuntimeException failure = cause;
+            if (culprit != null && p != culprit)
+                failure = new IllegalStateException("Rolled back because stream "
+                        + culprit.streamId + " failed: " + cause.getMessage(), cause);
+            results.add(new StreamCommitResult(p.streamId, p.events.size(), failure));
+        }
+        return new UnitOfWorkResult(results);
+    }
+
+    private void write(Pending<T> p, String commitId) {
+        EventSourcingBus<Event> bus = p.registration.isNew
+                ? repository.busForAdd(p.streamId)
+                : repository.busForSave(p.streamId, p.version);
+        bus.storeAll(p.events);
+        bus.commit(commitId);
+    }
+
+    private static final class Registration<T> {
+        final T obj;
+        final boolean isNew;
+        Registration(T obj, boolean isNew) {
+            this.obj = obj;
+            this.isNew = isNew;
+        }
+    }
+
+    private static final class Pending<T> {
+        final Registration<T> registration;
+        final String streamId;
+        final long version;
+        final List<Event> events;
+        Pending(Registration<T> registration, String streamId, long version, List<Event> events) {
+            this.registration = registration;
+            this.streamId = streamId;
+            this.version = version;
+            this.events = events;
+        }
+    }
+
+}
@@ -22,6 +22,7 @@
 package org.jeecqrs.common.sagas;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import org.jeecqrs.common.commands.Command;
 import org.jeecqrs.common.event.Event;
@@ -38,7 +39,7 @@ import org.jeecqrs.common.util.Validate;
 public abstract class AbstractEventSourcedSaga extends AbstractSaga {
 
     // the list of events that change the state of the aggregate relative to {@code version}
-    private final List<Event> changes = new ArrayList<>();
+    private List<Event> changes = new ArrayList<>();
     // the persisted version this saga is based on, used for optimistic concurrency
     private long version = 0l;
     private boolean eventSourceReplayActive = false;
@@ -78,14 +79,15 @@ public abstract class AbstractEventSourcedSaga extends AbstractSaga {
     }
 
     /**
-     * Loads a version of the saga from a list of Event. 
+     * Loads a version of the saga from a stream of Event,
+     * applying each event as it is read. 
      */
     @Load
-    private void load(long version, List<Event> events) {
+    private void load(long version, Iterator<Event> events) {
         Validate.isTrue(this.version == 0l, "Cannot load on dirty saga");
         this.eventSourceReplayActive = true;
-        for (Event event : events)
-            this.invokeHandler(event);
+        while (events.hasNext())
+            this.invokeHandler(events.next());
         this.eventSourceReplayActive = false;
         this.version = version;
     }
@@ -98,9 +100,9 @@ public abstract class AbstractEventSourcedSaga extends AbstractSaga {
      */
     @Store
     private void store(EventSourcingBus<Event> eventBus) {
-        for (Event event : this.changes)
-            eventBus.store(event);
-        this.changes.clear();
+        // hand the list over instead of copying it, the bus may keep it
+        eventBus.storeAll(this.changes);
+        this.changes = new ArrayList<>();
         this.version++;
     }
 
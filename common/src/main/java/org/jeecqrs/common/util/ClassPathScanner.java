@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds the classes of a package on the class path.
+ * Supports packages in directories and in jar files, i.e., resources with
+ * the {@code file} and {@code jar} URL protocols.  Classes in sub-packages
+ * are included.
+ */
+public class ClassPathScanner {
+
+    private final static Logger log = Logger.getLogger(ClassPathScanner.class.getCanonicalName());
+
+    /**
+     * Finds the classes of the given package and its sub-packages.
+     * The classes are loaded, but not initialized.
+     * 
+     * @param classLoader  the class loader to search and load the classes with, not null
+     * @param packageName  the name of the package, not null
+     * @return  the classes found
+     */
+    public static List<Class<?>> findClasses(ClassLoader classLoader, String packageName) {
+        Validate.notNull(classLoader, "classLoader must not be null");
+        Validate.notNull(packageName, "packageName must not be null");
+        String path = packageName.replace('.', '/');
+        List<String> names = new ArrayList<>();
+        try {
+            Enumeration<URL> resources = classLoader.getResources(path);
+            while (resources.hasMoreElements()) {
+                URL url = resources.nextElement();
+                if ("file".equals(url.getProtocol()))
+                    collectFromDirectory(new File(url.toURI()), packageName, names);
+                else if ("jar".equals(url.getProtocol()))
+                    collectFromJar(url, path, names);
+                else
+                    log.log(Level.WARNING, "Cannot scan {0}: unsupported protocol", url);
+            }
+        } catch (IOException | URISyntaxException e) {
+            throw new RuntimeException("Cannot scan package " + packageName + ": " + e.getMessage(), e);
+        }
+        List<Class<?>> classes = new ArrayList<>(names.size());
+        for (String name : names) {
+            try {
+                classes.add(Class.forName(name, false, classLoader));
+            } catch (ClassNotFoundException | LinkageError e) {
+                log.log(Level.FINE, "Skipping class {0}: {1}", new Object[]{name, e});
+            }
+        }
+        return classes;
+    }
+
+    private static void collectFromDirectory(File dir, String packageName, List<String> names) {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+        for (File f : files) {
+            if (f.isDirectory())
+                collectFromDirectory(f, packageName + "." + f.getName(), names);
+            else if (f.getName().endsWith(".class"))
+                names.add(packageName + "." + f.getName().substring(0, f.getName().length() - 6));
+        }
+    }
+
+    private static void collectFromJar(URL url, String path, List<String> names) throws IOException {
+        JarURLConnection conn = (JarURLConnection) url.openConnection();
+        conn.setUseCaches(false);
+        try (JarFile jar = conn.getJarFile()) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.startsWith(path + "/") && name.endsWith(".class"))
+                    names.add(name.substring(0, name.length() - 6).replace('/', '.'));
+            }
+        }
+    }
+
+}
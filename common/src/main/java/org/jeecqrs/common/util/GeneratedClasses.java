@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Locates the classes generated for a class by the
+ * {@code jcommondomain-processor} annotation processor.
+ * For a class {@code com.example.Outer$Inner}, the generated class is
+ * the top level class {@code com.example.Outer$Inner_EventSourcing}, i.e.,
+ * the binary name is kept as is, such that the generated names of
+ * {@code Outer.Inner} and {@code Outer_Inner} cannot collide.
+ */
+public class GeneratedClasses {
+
+    private final static Logger log = Logger.getLogger(GeneratedClasses.class.getCanonicalName());
+
+    public static final String SUFFIX = "_EventSourcing";
+
+    /**
+     * Gets the binary name of the class generated for the given class.
+     * 
+     * @param type  the class
+     * @return  the name of the generated class
+     */
+    public static String generatedClassName(Class<?> type) {
+        return type.getName().concat(SUFFIX);
+    }
+
+    /**
+     * Creates an instance of the class generated for the given class,
+     * if the generated class exists and implements the given interface.
+     * 
+     * @param <S>   the interface type
+     * @param type  the class the generated class was generated for
+     * @param spi   the interface to be implemented by the generated class
+     * @return  the instance or {@code null} if no suitable class has been generated
+     */
+    public static <S> S instanceFor(Class<?> type, Class<S> spi) {
+        ClassLoader cl = type.getClassLoader();
+        if (cl == null)
+            return null;
+        String name = generatedClassName(type);
+        try {
+            Class<?> generated = Class.forName(name, true, cl);
+            if (!spi.isAssignableFrom(generated))
+                return null;
+            return spi.cast(generated.getDeclaredConstructor().newInstance());
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (InstantiationException | IllegalAccessException |
+                NoSuchMethodException | InvocationTargetException e) {
+            log.log(Level.WARNING, "Cannot instantiate generated class {0}: {1}",
+                    new Object[]{name, e});
+            return null;
+        }
+    }
+
+}
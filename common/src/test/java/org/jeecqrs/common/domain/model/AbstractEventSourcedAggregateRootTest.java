@@ -1,9 +1,13 @@
 package org.jeecqrs.common.domain.model;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import org.jeecqrs.common.AbstractId;
+import org.jeecqrs.common.event.sourcing.EventSourcingBus;
 import org.jeecqrs.common.event.sourcing.EventSourcingUtil;
+import org.jeecqrs.common.event.sourcing.Snapshot;
+import org.jeecqrs.common.event.sourcing.SnapshotPolicies;
 import static org.testng.Assert.*;
 import org.testng.annotations.Test;
 
@@ -46,6 +50,84 @@ public class AbstractEventSourcedAggregateRootTest
         assertEquals(changesIn(instance).size(), 6);
     }
 
+    @Test
+    public void test_snapshot_and_tail_replay() {
+        SnapshottingAESARImpl template = new SnapshottingAESARImpl(new AbstractIdImpl("TEST_ID"), 8);
+        template.apply(new IncreasedCounter(5));
+        List<DomainEvent> stream = new ArrayList<>();
+        EventSourcingUtil.transferChanges(template, stream);
+
+        Snapshot snapshot = EventSourcingUtil.captureSnapshot(template, SnapshotPolicies.everyEvents(2));
+        assertNotNull(snapshot);
+        assertEquals(snapshot.version(), 1l);
+        assertEquals(snapshot.eventCount(), 2l);
+        assertNull(EventSourcingUtil.captureSnapshot(template, SnapshotPolicies.everyEvents(1)),
+                "no events since last snapshot");
+
+        template.apply(new IncreasedCounter(27));
+        assertNull(EventSourcingUtil.captureSnapshot(template, SnapshotPolicies.everyEvents(1)),
+                "unsaved changes must not be snapshotted");
+        EventSourcingUtil.transferChanges(template, stream);
+
+        SnapshottingAESARImpl restored = EventSourcingUtil.createByDefaultConstructor(SnapshottingAESARImpl.class);
+        EventSourcingUtil.restoreSnapshotIntoObject(restored, snapshot, 2, stream.subList(2, 3).iterator());
+        assertEquals(restored.id.toString(), "TEST_ID");
+        assertEquals(restored.counter, 40);
+        assertEquals(EventSourcingUtil.retrieveVersion(restored), 2l);
+    }
+
+    @Test
+    public void test_catch_up() {
+        AESARImpl writer = fresh_instance();
+        List<DomainEvent> stream = changesIn(writer);
+        AESARImpl reader = EventSourcingUtil.createByDefaultConstructor(AESARImpl.class);
+        EventSourcingUtil.loadEventStreamIntoObject(reader, 1, stream);
+        assertEquals(reader.counter, 40);
+
+        writer.apply(new IncreasedCounter(2));
+        stream.addAll(changesIn(writer));
+        writer.apply(new IncreasedCounter(3));
+        stream.addAll(changesIn(writer));
+
+        EventSourcingUtil.catchUpObject(reader, 3, stream.iterator());
+        assertEquals(reader.counter, 45);
+        assertEquals(EventSourcingUtil.retrieveVersion(reader), 3l);
+
+        EventSourcingUtil.catchUpObject(reader, 3, stream.iterator());
+        assertEquals(reader.counter, 45, "catching up to the same version applies nothing");
+    }
+
+    @Test
+    public void test_no_snapshot_without_state() {
+        AESARImpl instance = replayed_instance(fresh_instance());
+        assertFalse(EventSourcingUtil.supportsSnapshots(AESARImpl.class));
+        assertNull(EventSourcingUtil.captureSnapshot(instance, SnapshotPolicies.everyEvents(1)));
+        assertTrue(EventSourcingUtil.supportsSnapshots(SnapshottingAESARImpl.class));
+    }
+
+    @Test
+    public void test_store_hands_over_changes() {
+        AESARImpl instance = fresh_instance();
+        final List<List<? extends DomainEvent>> batches = new ArrayList<>();
+        EventSourcingUtil.invokeStoreMethod(instance, new EventSourcingBus<DomainEvent>() {
+            @Override
+            public void store(DomainEvent event) {
+                fail("events must be stored as a batch");
+            }
+            @Override
+            public void storeAll(List<? extends DomainEvent> events) {
+                batches.add(events);
+            }
+            @Override
+            public void commit(String commitId) { }
+        });
+        assertEquals(batches.size(), 1);
+        assertEquals(batches.get(0).size(), 3);
+        instance.apply(new IncreasedCounter(1));
+        assertEquals(batches.get(0).size(), 3, "handed over list must not change");
+        assertEquals(changesIn(instance).size(), 1);
+    }
+
     protected List<DomainEvent> changesIn(AESARImpl instance) {
         List<DomainEvent> changes = new ArrayList<>();
         EventSourcingUtil.transferChanges(instance, changes);
@@ -79,6 +161,51 @@ public class AbstractEventSourcedAggregateRootTest
         }
     }
 
+    public static class SnapshottingAESARImpl extends AbstractSnapshottingAggregateRoot {
+        AbstractIdImpl id;
+        int counter;
+
+        protected SnapshottingAESARImpl(AbstractIdImpl id, int counter) {
+            apply(new InstanceCreated(id, counter));
+        }
+
+        private SnapshottingAESARImpl() { }
+
+        @Override
+        public AbstractIdImpl id() {
+            return this.id;
+        }
+
+        protected void when(InstanceCreated e) {
+            this.id = e.id;
+            this.counter = e.initialCounter;
+        }
+
+        protected void when(IncreasedCounter e) {
+            this.counter += e.step;
+        }
+
+        @Override
+        protected Serializable snapshotState() {
+            return new State(id, counter);
+        }
+
+        @Override
+        protected void restoreSnapshotState(Serializable state) {
+            this.id = ((State) state).id;
+            this.counter = ((State) state).counter;
+        }
+
+        static class State implements Serializable {
+            final AbstractIdImpl id;
+            final int counter;
+            State(AbstractIdImpl id, int counter) {
+                this.id = id;
+                this.counter = counter;
+            }
+        }
+    }
+
     public static class AbstractIdImpl extends AbstractId<AbstractIdImpl> {
 
         public AbstractIdImpl(String idString) {
@@ -1,5 +1,13 @@
 package org.jeecqrs.common.event.routing;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.jeecqrs.common.event.routing.convention.ConventionDispatchTable;
 import org.jeecqrs.common.event.routing.convention.ConventionEventRouter;
 import org.jeecqrs.common.event.Event;
 import static org.testng.Assert.*;
@@ -33,6 +41,210 @@ public class ConventionEventRouterTest {
         assertEquals(bar.getCalledEv1(), 1);
         assertEquals(bar.getCalledEv2(), 0);
     }
-    
+
+    @Test
+    public void testDispatchTableIsSharedPerClass() throws Exception {
+        ConventionDispatchTable t1 = ConventionDispatchTable.forClass(Derived.class, "when");
+        ConventionDispatchTable t2 = ConventionDispatchTable.forClass(Derived.class, "when");
+        assertSame(t1, t2);
+        assertEquals(t1.handledEventTypes().size(), 2);
+        assertEquals(t1.handlerFor(TestEvent1.class).method().getDeclaringClass(), Base.class);
+        assertEquals(t1.handlerFor(TestEvent2.class).method().getDeclaringClass(), Derived.class);
+        assertNotSame(t1, ConventionDispatchTable.forClass(Base.class, "when"));
+    }
+
+    @Test
+    public void testIgnoredEventsWithoutException() throws Exception {
+        Hidden foo = new Hidden();
+        EventRouter<Void, Event> router = new ConventionEventRouter<>(false);
+        router.register(foo);
+        assertNull(router.routeEvent(new TestEvent1()));
+        assertNull(router.routeEvent(new TestEvent2()));
+        assertEquals(foo.calledEv2, 1);
+
+        ConventionDispatchTable table = ConventionDispatchTable.forClass(Hidden.class, "when");
+        assertSame(table.handlerFor(TestEvent1.class), ConventionDispatchTable.NO_HANDLER);
+        assertSame(table.handlerFor(Event.class), ConventionDispatchTable.NO_HANDLER);
+        assertFalse(table.handledEventTypes().contains(TestEvent1.class));
+    }
+
+    @Test
+    public void testHiddenHandlerShadowsLessSpecificHandler() throws Exception {
+        EventRouter<String, Event> router = new ConventionEventRouter<>(false);
+        router.register(new HiddenSpecific());
+        assertNull(router.routeEvent(new TestEvent1()));
+        assertNull(router.routeEvent(new SpecialEvent1()), "subtypes must not fall back to the Event handler");
+        assertEquals(router.routeEvent(new TestEvent2()), "Event");
+
+        ConventionDispatchTable table = ConventionDispatchTable.forClass(HiddenSpecific.class, "when");
+        assertSame(table.handlerFor(MoreSpecialEvent1.class), ConventionDispatchTable.NO_HANDLER);
+        assertSame(table.handlerFor(MarkedEvent.class), table.handlerFor(TestEvent2.class));
+    }
+
+    @Test(expectedExceptions = EndpointNotFoundException.class)
+    public void testHiddenHandlerIsNotFound() throws Exception {
+        EventRouter<Void, Event> router = new ConventionEventRouter<>();
+        router.register(new Hidden());
+        router.routeEvent(new TestEvent1());
+    }
+
+    @Test
+    public void testPolymorphicHandlerResolution() throws Exception {
+        Polymorphic foo = new Polymorphic();
+        EventRouter<String, Event> router = new ConventionEventRouter<>();
+        router.register(foo);
+        assertEquals(router.routeEvent(new TestEvent1()), "TestEvent1");
+        assertEquals(router.routeEvent(new SpecialEvent1()), "TestEvent1");
+        assertEquals(router.routeEvent(new MoreSpecialEvent1()), "MoreSpecialEvent1");
+        assertEquals(router.routeEvent(new MarkedEvent()), "Marker");
+
+        ConventionDispatchTable table = ConventionDispatchTable.forClass(Polymorphic.class, "when");
+        assertSame(table.handlerFor(SpecialEvent1.class), table.handlerFor(TestEvent1.class));
+        assertEquals(table.handledEventTypes().size(), 3);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testAmbiguousHandlerResolution() throws Exception {
+        EventRouter<String, Event> router = new ConventionEventRouter<>();
+        router.register(new Polymorphic());
+        router.routeEvent(new MarkedEvent1());
+    }
+
+    @Test
+    public void testGeneratedDispatcherIsUsed() throws Exception {
+        Generated foo = new Generated();
+        EventRouter<Void, Event> router = new ConventionEventRouter<>(false);
+        router.register(foo);
+        int before = Generated_EventSourcing.dispatched;
+        router.routeEvent(new TestEvent1());
+        router.routeEvent(new TestEvent2());
+        assertEquals(Generated_EventSourcing.dispatched, before + 2);
+        assertEquals(foo.getCalledEv1(), 1);
+        assertEquals(foo.getCalledEv2(), 1);
+        ConventionDispatchTable table = ConventionDispatchTable.forClass(Generated.class, "when");
+        assertNull(table.handlerFor(TestEvent1.class).method());
+        assertNull(table.handlerFor(TestEvent2.class).method());
+    }
+
+    @Test
+    public void testOutOfDateGeneratedDispatcherIsIgnored() throws Exception {
+        Stale foo = new Stale();
+        EventRouter<Void, Event> router = new ConventionEventRouter<>(false);
+        router.register(foo);
+        router.routeEvent(new TestEvent1());
+        router.routeEvent(new TestEvent2());
+        assertEquals(Stale_EventSourcing.dispatched, 0);
+        assertEquals(foo.getCalledEv1(), 1);
+        // the handler unknown to the generated dispatcher is called, too
+        assertEquals(foo.getCalledEv2(), 1);
+        ConventionDispatchTable table = ConventionDispatchTable.forClass(Stale.class, "when");
+        assertEquals(table.handlerFor(TestEvent2.class).method().getDeclaringClass(), Base.class);
+    }
+
+    @Test
+    public void testDispatchTableIsSharedAcrossThreads() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<ConventionDispatchTable>> tasks = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                tasks.add(new Callable<ConventionDispatchTable>() {
+                    @Override
+                    public ConventionDispatchTable call() throws Exception {
+                        Base foo = new Base();
+                        EventRouter<Void, Event> router = new ConventionEventRouter<>();
+                        router.register(foo);
+                        router.routeEvent(new TestEvent1());
+                        router.routeEvent(new TestEvent2());
+                        router.routeEvent(new TestEvent2());
+                        assertEquals(foo.getCalledEv1(), 1);
+                        assertEquals(foo.getCalledEv2(), 2);
+                        return ConventionDispatchTable.forClass(Base.class, "when");
+                    }
+                });
+            }
+            List<Future<ConventionDispatchTable>> results = pool.invokeAll(tasks);
+            ConventionDispatchTable first = results.get(0).get();
+            assertEquals(first.handledEventTypes().size(), 2);
+            for (Future<ConventionDispatchTable> f : results)
+                assertSame(f.get(), first);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testExplicitEndpointTakesPrecedence() throws Exception {
+        Base foo = new Base();
+        EventRouter<String, Event> router = new ConventionEventRouter<>();
+        router.register(foo);
+        router.register(TestEvent1.class, new EventRouteEndpoint<String, Event>() {
+            @Override
+            public String consumeEvent(Event event) {
+                return "explicit";
+            }
+        });
+        assertEquals(router.routeEvent(new TestEvent1()), "explicit");
+        router.routeEvent(new TestEvent2());
+        assertEquals(foo.getCalledEv1(), 0);
+        assertEquals(foo.getCalledEv2(), 1);
+    }
+
+    @Test
+    public void testMethodHandleEndpoint() throws Exception {
+        Base foo = new Base();
+        Method m = Base.class.getDeclaredMethod("when", TestEvent1.class);
+        m.setAccessible(true);
+        EventRouteEndpoint<Void, Event> endpoint = new MethodHandleEndpoint<>(foo, m);
+        endpoint.consumeEvent(new TestEvent1());
+        endpoint.consumeEvent(new TestEvent1());
+        assertEquals(foo.getCalledEv1(), 2);
+    }
+
+    public static class Hidden {
+        private int calledEv2 = 0;
+        private void when(TestEvent1 ev) {
+            fail("private handler must not be called");
+        }
+        protected void when(TestEvent2 ev) {
+            calledEv2++;
+        }
+    }
+
+    public static class HiddenSpecific {
+        protected String when(Event<?> ev) {
+            return "Event";
+        }
+        String when(TestEvent1 ev) {
+            fail("package private handler must not be called");
+            return null;
+        }
+    }
+
+    public interface Marker<T> extends Event<T> {
+    }
+
+    public static class SpecialEvent1 extends TestEvent1 {
+    }
+
+    public static class MoreSpecialEvent1 extends SpecialEvent1 {
+    }
+
+    public static class MarkedEvent extends TestEvent2 implements Marker<TestEvent2> {
+    }
+
+    public static class MarkedEvent1 extends TestEvent1 implements Marker<TestEvent1> {
+    }
+
+    public static class Polymorphic {
+        protected String when(TestEvent1 ev) {
+            return "TestEvent1";
+        }
+        protected String when(MoreSpecialEvent1 ev) {
+            return "MoreSpecialEvent1";
+        }
+        protected String when(Marker<?> ev) {
+            return "Marker";
+        }
+    }
     
 }
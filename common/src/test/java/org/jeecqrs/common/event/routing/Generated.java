@@ -0,0 +1,8 @@
+package org.jeecqrs.common.event.routing;
+
+/**
+ * Class with a hand-written "generated" dispatcher.
+ */
+public class Generated extends Base {
+
+}
@@ -0,0 +1,33 @@
+package org.jeecqrs.common.event.routing;
+
+import org.jeecqrs.common.event.Event;
+import org.jeecqrs.common.event.routing.convention.ConventionDispatcher;
+
+/**
+ * Stands in for a dispatcher generated by the annotation processor.
+ */
+public final class Generated_EventSourcing implements ConventionDispatcher {
+
+    static int dispatched = 0;
+
+    @Override
+    public String methodName() {
+        return "when";
+    }
+
+    @Override
+    public Class<?>[] eventTypes() {
+        return new Class<?>[]{ TestEvent1.class, TestEvent2.class };
+    }
+
+    @Override
+    public Object dispatch(Object target, int handler, Event<?> event) {
+        dispatched++;
+        if (handler == 0)
+            ((Generated) target).when((TestEvent1) event);
+        else
+            ((Generated) target).when((TestEvent2) event);
+        return null;
+    }
+
+}
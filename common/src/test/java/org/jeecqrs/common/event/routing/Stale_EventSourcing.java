@@ -0,0 +1,31 @@
+package org.jeecqrs.common.event.routing;
+
+import org.jeecqrs.common.event.Event;
+import org.jeecqrs.common.event.routing.convention.ConventionDispatcher;
+
+/**
+ * Stands in for a dispatcher generated before the class got its
+ * {@code TestEvent2} handler.
+ */
+public final class Stale_EventSourcing implements ConventionDispatcher {
+
+    static int dispatched = 0;
+
+    @Override
+    public String methodName() {
+        return "when";
+    }
+
+    @Override
+    public Class<?>[] eventTypes() {
+        return new Class<?>[]{ TestEvent1.class };
+    }
+
+    @Override
+    public Object dispatch(Object target, int handler, Event<?> event) {
+        dispatched++;
+        ((Stale) target).when((TestEvent1) event);
+        return null;
+    }
+
+}
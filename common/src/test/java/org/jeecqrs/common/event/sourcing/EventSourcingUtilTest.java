@@ -72,4 +72,54 @@ public class EventSourcingUtilTest {
         assertEquals(stored.size(), 2);
     }
 
+    @Test
+    public void testListLoadMethodAcceptsIterator() {
+        List<Event> orig = new ArrayList<>();
+        orig.add(new TestEvent());
+        orig.add(new TestEvent());
+
+        TestObject obj = EventSourcingUtil.createByDefaultConstructor(TestObject.class);
+        EventSourcingUtil.loadEventStreamIntoObject(obj, 5, orig.iterator());
+        assertEquals(obj.version, 5l);
+        assertEquals(obj.stream, orig);
+    }
+
+    @Test
+    public void testAccessorIsSharedPerClass() {
+        EventSourcingAccessor accessor = EventSourcingUtil.accessorFor(TestObject.class);
+        assertSame(EventSourcingUtil.accessorFor(TestObject.class), accessor);
+
+        TestObject obj = EventSourcingUtil.createByDefaultConstructor(TestObject.class);
+        List<Event> events = new ArrayList<>();
+        events.add(new TestEvent());
+        accessor.load(obj, 3, events.iterator());
+        assertEquals(accessor.version(obj), 3l);
+
+        obj.add(new TestEvent());
+        List<Event> changes = new ArrayList<>();
+        EventSourcingUtil.transferChanges(obj, changes);
+        assertEquals(changes.size(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testMissingVersionMethodIsReportedOnUse() {
+        EventSourcingUtil.retrieveVersion(new Object());
+    }
+
+    @Test
+    public void testInstanceFactoryIsSharedPerClass() {
+        InstanceFactory<TestObject> factory = EventSourcingUtil.instanceFactoryFor(TestObject.class);
+        assertSame(EventSourcingUtil.instanceFactoryFor(TestObject.class), factory);
+        TestObject first = factory.newInstance();
+        TestObject second = factory.newInstance();
+        assertNotNull(first);
+        assertNotSame(first, second);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class,
+            expectedExceptionsMessageRegExp = "Class does not provide default constructor.*")
+    public void testMissingDefaultConstructorIsReportedOnUse() {
+        EventSourcingUtil.createByDefaultConstructor(Integer.class);
+    }
+
 }
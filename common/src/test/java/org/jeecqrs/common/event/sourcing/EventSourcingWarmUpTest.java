@@ -0,0 +1,49 @@
+package org.jeecqrs.common.event.sourcing;
+
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ *
+ */
+public class EventSourcingWarmUpTest {
+
+    @Test
+    public void testWarmUpWithoutProblems() throws Exception {
+        WarmUpReport report = new EventSourcingWarmUp()
+                .add(TestObject.class)
+                .addEvents(TestEvent.class)
+                .run();
+        assertFalse(report.hasProblems(), report.toString());
+        assertTrue(report.preparedClasses().contains(TestObject.class));
+        report.failOnProblems();
+    }
+
+    @Test
+    public void testMissingHandlerIsReported() throws Exception {
+        WarmUpReport report = new EventSourcingWarmUp()
+                .expectHandlers(TestObject.class, TestEvent.class)
+                .run();
+        assertEquals(report.problems().size(), 1);
+        assertEquals(report.problems().get(0).type(), TestObject.class);
+        assertTrue(report.problems().get(0).message().contains(TestEvent.class.getName()));
+    }
+
+    @Test
+    public void testMissingEventSourcingMethodsAreReported() throws Exception {
+        WarmUpReport report = new EventSourcingWarmUp()
+                .add(TestEvent.class)
+                .run();
+        assertEquals(report.problems().size(), 3, report.toString());
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        WarmUpReport report = new EventSourcingWarmUp()
+                .scan(getClass().getClassLoader(), "org.jeecqrs.common.event.sourcing")
+                .run();
+        assertTrue(report.preparedClasses().contains(TestObject.class));
+        assertFalse(report.preparedClasses().contains(TestEvent.class));
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.event.sourcing;
+
+import java.util.concurrent.TimeUnit;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class SnapshotPoliciesTest {
+
+    @Test
+    public void testEveryEvents() {
+        SnapshotPolicy policy = SnapshotPolicies.everyEvents(10);
+        assertFalse(policy.shouldSnapshot(9, 0));
+        assertTrue(policy.shouldSnapshot(10, 0));
+    }
+
+    @Test
+    public void testEveryDuration() {
+        SnapshotPolicy policy = SnapshotPolicies.every(1, TimeUnit.HOURS);
+        long now = System.currentTimeMillis();
+        assertTrue(policy.shouldSnapshot(1, 0), "no snapshot yet");
+        assertFalse(policy.shouldSnapshot(0, 0), "no new events");
+        assertFalse(policy.shouldSnapshot(100, now));
+        assertTrue(policy.shouldSnapshot(1, now - TimeUnit.HOURS.toMillis(2)));
+    }
+
+    @Test
+    public void testAnyOf() {
+        SnapshotPolicy policy = SnapshotPolicies.anyOf(SnapshotPolicies.never(),
+                SnapshotPolicies.everyEvents(5));
+        assertFalse(policy.shouldSnapshot(4, 0));
+        assertTrue(policy.shouldSnapshot(5, 0));
+    }
+
+}
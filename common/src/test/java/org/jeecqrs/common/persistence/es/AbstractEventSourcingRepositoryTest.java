@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.jeecqrs.common.event.Event;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class AbstractEventSourcingRepositoryTest {
+
+    @Test
+    public void testOfIdentities() {
+        InMemoryTestRepository repo = new InMemoryTestRepository();
+        repo.add(new Item("a"), "c1");
+        Item b = new Item("b");
+        b.increase(5);
+        repo.add(b, "c2");
+
+        BatchLoadResult<String, Item> result = repo.ofIdentities(Arrays.asList("b", "x", "a", "b"));
+        assertEquals(new ArrayList<>(result.loaded().keySet()), Arrays.asList("b", "a"));
+        assertEquals(result.get("b").counter, 5);
+        assertEquals(new ArrayList<>(result.failures().keySet()), Arrays.asList("x"));
+        assertTrue(result.failures().get("x") instanceof IllegalStateException);
+        assertEquals(repo.streamReads.get(), 3, "each identity is loaded once");
+    }
+
+    @Test
+    public void testOfIdentitiesOnExecutor() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ConcurrentRepository repo = new ConcurrentRepository(executor);
+            for (int i = 0; i < 20; i++) {
+                Item item = new Item("i" + i);
+                item.increase(i);
+                repo.add(item, "c" + i);
+            }
+            BatchLoadResult<String, Item> result = repo.ofIdentities(
+                    Arrays.asList("i3", "i17", "missing", "i0"));
+            assertEquals(result.loaded().size(), 3);
+            assertEquals(result.get("i17").counter, 17);
+            assertEquals(result.get("i3").counter, 3);
+            assertTrue(result.hasFailures());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testOfIdentitiesOnExecutorWrapsCheckedExceptions() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ThrowingRepository repo = new ThrowingRepository(executor);
+            repo.add(new Item("a"), "c1");
+            repo.add(new Item("bad"), "c2");
+            BatchLoadResult<String, Item> result = repo.ofIdentities(Arrays.asList("a", "bad"));
+            assertEquals(new ArrayList<>(result.loaded().keySet()), Arrays.asList("a"));
+            RuntimeException failure = result.failures().get("bad");
+            assertTrue(failure instanceof IllegalStateException);
+            assertTrue(failure.getCause() instanceof IOException);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCachedObjectIsCheckedOut() {
+        AggregateCache<Item> cache = new AggregateCache<>(10);
+        CachingRepository repo = new CachingRepository(cache);
+        Item item = new Item("a");
+        repo.add(item, "c1");
+        assertNotSame(repo.ofIdentity("a"), item, "saved objects are not cached until released");
+        repo.release(item);
+        assertSame(repo.ofIdentity("a"), item);
+        Item other = repo.ofIdentity("a");
+        assertNotSame(other, item, "checked out objects are not handed out twice");
+        assertEquals(repo.streamReads.get(), 2);
+
+        item.increase(1);
+        repo.save(item, "c2");
+        repo.release(item);
+        other.increase(2);
+        try {
+            repo.save(other, "c3");
+            fail("concurrent modification must fail");
+        } catch (ConcurrencyConflictException e) {
+            // ok
+        }
+        assertEquals(cache.stats().invalidations(), 1);
+        Item reloaded = repo.ofIdentity("a");
+        assertNotSame(reloaded, item);
+        assertEquals(reloaded.counter, 1);
+    }
+
+    @Test
+    public void testReleasedLoadIsCached() {
+        CachingRepository repo = new CachingRepository(new AggregateCache<Item>(10));
+        repo.add(new Item("a"), "c1");
+        Item loaded = repo.ofIdentity("a");
+        repo.release(loaded);
+        assertSame(repo.ofIdentity("a"), loaded);
+        assertEquals(repo.streamReads.get(), 1);
+    }
+
+    @Test
+    public void testExecuteKeepsResultCheckedOut() {
+        CachingRepository repo = new CachingRepository(new AggregateCache<Item>(10));
+        repo.add(new Item("a"), "c0");
+        Item result = repo.execute("a", "c1", item -> item.increase(1));
+        assertNotSame(repo.ofIdentity("a"), result);
+        repo.release(result);
+        assertSame(repo.ofIdentity("a"), result);
+    }
+
+    @Test
+    public void testConcurrentCheckoutsAfterSaveGetDistinctInstances() throws Exception {
+        final CachingRepository repo = new CachingRepository(new AggregateCache<Item>(10));
+        Item item = new Item("a");
+        repo.add(item, "c1");
+        item.increase(1);
+        repo.save(item, "c2");
+        repo.release(item);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            Callable<Item> checkout = () -> {
+                start.await();
+                return repo.ofIdentity("a");
+            };
+            Future<Item> first = executor.submit(checkout);
+            Future<Item> second = executor.submit(checkout);
+            start.countDown();
+            Item a = first.get();
+            Item b = second.get();
+            assertNotSame(a, b);
+            assertTrue(a == item || b == item, "one of the callers gets the cached object");
+            assertEquals(a.counter, 1);
+            assertEquals(b.counter, 1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecuteRetriesOnConflict() {
+        final InMemoryTestRepository repo = new InMemoryTestRepository();
+        repo.add(new Item("a"), "c0");
+        final int[] calls = new int[1];
+        Item result = repo.execute("a", "c1", item -> {
+            if (calls[0]++ == 0) {
+                // a competing writer commits first
+                Item other = repo.ofIdentity("a");
+                other.increase(10);
+                repo.save(other, "c-other");
+            }
+            item.increase(1);
+        });
+        assertEquals(calls[0], 2);
+        assertEquals(result.counter, 11);
+        assertEquals(repo.ofIdentity("a").counter, 11);
+        assertEquals(repo.conflictStatistics().totalConflicts(), 1);
+        assertEquals(repo.conflictStatistics().conflictsFor("org.jeecqrs.common.persistence.es.Item:a"), 1);
+        assertEquals(repo.conflictStatistics().retries(), 1);
+    }
+
+    @Test
+    public void testExecuteGivesUp() {
+        final InMemoryTestRepository repo = new InMemoryTestRepository();
+        repo.add(new Item("a"), "c0");
+        try {
+            repo.execute("a", "c1", item -> {
+                Item other = repo.ofIdentity("a");
+                other.increase(10);
+                repo.save(other, "c-other");
+                item.increase(1);
+            });
+            fail("must give up after the maximum number of attempts");
+        } catch (ConcurrencyConflictException e) {
+            // ok
+        }
+        assertEquals(repo.conflictStatistics().totalConflicts(), RetryPolicy.defaults().maxAttempts());
+        assertEquals(repo.conflictStatistics().exhausted(), 1);
+    }
+
+    @Test
+    public void testWriteLocksSerializeExecute() throws Exception {
+        final LockingRepository repo = new LockingRepository();
+        repo.add(new Item("a"), "c0");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                final String commitId = "c" + (i + 1);
+                futures.add(executor.submit(() -> repo.execute("a", commitId, item -> item.increase(1))));
+            }
+            for (Future<?> f : futures)
+                f.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(repo.ofIdentity("a").counter, 50);
+        assertEquals(repo.conflictStatistics().totalConflicts(), 0);
+    }
+
+    @Test
+    public void testStripedLock() {
+        StripedLock locks = new StripedLock(12);
+        assertEquals(locks.stripes(), 16);
+        assertSame(locks.lockFor(new String("stream")), locks.lockFor("stream"));
+    }
+
+    @Test
+    public void testExistenceFilter() {
+        FilteredRepository repo = new FilteredRepository();
+        repo.add(new Item("a"), "c1");
+        assertTrue(repo.exists("a"));
+        // created behind the repository's back, so the filter does not know it
+        repo.streams.put(repo.streamNameGenerator().streamNameFor(Item.class, "b"),
+                new ArrayList<List<Event>>());
+        assertTrue(repo.exists("b"), "unseeded filter must not hide streams");
+        assertFalse(repo.exists("c"));
+        repo.filter.markSeeded();
+        assertTrue(repo.exists("a"));
+        assertFalse(repo.exists("b"));
+        repo.filter.add(repo.streamNameGenerator().streamNameFor(Item.class, "b"));
+        assertTrue(repo.exists("b"));
+    }
+
+    static class ConcurrentRepository extends InMemoryTestRepository {
+        final Executor executor;
+        ConcurrentRepository(Executor executor) {
+            this.executor = executor;
+        }
+        @Override
+        protected Executor batchLoadExecutor() {
+            return executor;
+        }
+    }
+
+    static class ThrowingRepository extends ConcurrentRepository {
+        ThrowingRepository(Executor executor) {
+            super(executor);
+        }
+        @Override
+        protected void loadFromStream(Item obj, String streamId) {
+            if (streamId.endsWith("bad"))
+                ThrowingRepository.<RuntimeException>sneakyThrow(new IOException("broken stream"));
+            super.loadFromStream(obj, streamId);
+        }
+        @SuppressWarnings("unchecked")
+        static <X extends Throwable> void sneakyThrow(Throwable t) throws X {
+            throw (X) t;
+        }
+    }
+
+    static class LockingRepository extends InMemoryTestRepository {
+        final StripedLock locks = new StripedLock(64);
+        @Override
+        protected StripedLock writeLocks() {
+            return locks;
+        }
+    }
+
+    static class FilteredRepository extends InMemoryTestRepository {
+        final StreamExistenceFilter filter = new StreamExistenceFilter(100, 0.01);
+        @Override
+        protected StreamExistenceFilter existenceFilter() {
+            return filter;
+        }
+    }
+
+    static class CachingRepository extends InMemoryTestRepository {
+        final AggregateCache<Item> cache;
+        CachingRepository(AggregateCache<Item> cache) {
+            this.cache = cache;
+        }
+        @Override
+        protected AggregateCache<Item> aggregateCache() {
+            return cache;
+        }
+    }
+
+}
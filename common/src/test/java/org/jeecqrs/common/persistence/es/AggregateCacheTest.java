@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class AggregateCacheTest {
+
+    @Test
+    public void testCheckoutRemovesEntry() {
+        AggregateCache<String> cache = new AggregateCache<>(10);
+        assertNull(cache.checkout("a"));
+        cache.checkin("a", "A1", 1);
+        assertEquals(cache.checkout("a"), "A1");
+        assertNull(cache.checkout("a"), "checked out objects are not shared");
+
+        AggregateCacheStats stats = cache.stats();
+        assertEquals(stats.hits(), 1);
+        assertEquals(stats.misses(), 2);
+        assertEquals(stats.size(), 0);
+        assertEquals(stats.hitRate(), 1.0 / 3.0, 0.0001);
+    }
+
+    @Test
+    public void testCheckinKeepsNewestVersion() {
+        AggregateCache<String> cache = new AggregateCache<>(10);
+        cache.checkin("a", "A2", 2);
+        cache.checkin("a", "A1", 1);
+        assertEquals(cache.checkout("a"), "A2");
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        AggregateCache<String> cache = new AggregateCache<>(2);
+        cache.checkin("a", "A", 1);
+        cache.checkin("b", "B", 1);
+        cache.checkin("a", "A2", 2);
+        cache.checkin("c", "C", 1);
+        assertNull(cache.checkout("b"));
+        assertEquals(cache.checkout("a"), "A2");
+        assertEquals(cache.checkout("c"), "C");
+        assertEquals(cache.stats().evictions(), 1);
+    }
+
+    @Test
+    public void testWeigher() {
+        AggregateCache<String> cache = new AggregateCache<>(10, new AggregateCache.Weigher<String>() {
+            @Override
+            public long weigh(String obj) {
+                return obj.length();
+            }
+        });
+        cache.checkin("a", "aaaa", 1);
+        cache.checkin("b", "bbbb", 1);
+        assertEquals(cache.stats().weight(), 8);
+        cache.checkin("c", "cccc", 1);
+        assertEquals(cache.stats().weight(), 8);
+        assertEquals(cache.stats().evictions(), 1);
+        cache.checkin("d", "ddddddddddd", 1);
+        assertNull(cache.checkout("d"), "objects heavier than the cache are not kept");
+    }
+
+    @Test
+    public void testInvalidate() {
+        AggregateCache<String> cache = new AggregateCache<>(10);
+        cache.checkin("a", "A", 1);
+        cache.invalidate("a");
+        cache.invalidate("b");
+        assertNull(cache.checkout("a"));
+        assertEquals(cache.stats().invalidations(), 1);
+        assertEquals(cache.stats().weight(), 0);
+    }
+
+}
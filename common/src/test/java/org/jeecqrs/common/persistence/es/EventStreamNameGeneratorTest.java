@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+
+package org.jeecqrs.common.persistence.es;
+
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class EventStreamNameGeneratorTest {
+
+    @Test
+    public void testCanonicalNameIsUnchanged() {
+        CanonicalNameEventStreamNameGenerator<Item, String> esng = new CanonicalNameEventStreamNameGenerator<>();
+        assertEquals(esng.streamNameFor(Item.class, "a"), Item.class.getCanonicalName() + ":a");
+        assertEquals(esng.streamNameFor(new Item("b")), Item.class.getCanonicalName() + ":b");
+    }
+
+    @Test
+    public void testAnnotationName() {
+        AnnotationEventStreamNameGenerator<NamedItem, String> esng = new AnnotationEventStreamNameGenerator<>();
+        assertEquals(esng.streamNameFor(NamedItem.class, "a"), "items:a");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMissingAnnotation() {
+        new AnnotationEventStreamNameGenerator<Item, String>().streamNameFor(Item.class, "a");
+    }
+
+    @EventStreamName(" items ")
+    static class NamedItem extends Item { }
+
+}
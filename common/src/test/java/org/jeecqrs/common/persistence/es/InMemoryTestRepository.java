@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jeecqrs.common.event.Event;
+import org.jeecqrs.common.event.sourcing.EventSourcingBus;
+import org.jeecqrs.common.event.sourcing.EventSourcingUtil;
+
+/**
+ * A repository that keeps the event streams in memory, where the version
+ * of a stream is its number of commits.
+ */
+public class InMemoryTestRepository extends AbstractEventSourcingRepository<Item, String, String> {
+
+    final Map<String, List<List<Event>>> streams = new ConcurrentHashMap<>();
+    final AtomicInteger streamReads = new AtomicInteger();
+
+    public InMemoryTestRepository() {
+        super(Item.class);
+    }
+
+    @Override
+    protected EventStreamNameGenerator<Item, String> streamNameGenerator() {
+        return new CanonicalNameEventStreamNameGenerator<>();
+    }
+
+    @Override
+    protected Item createFreshInstance(Class<Item> clazz, String id) {
+        return EventSourcingUtil.createByDefaultConstructor(clazz);
+    }
+
+    @Override
+    protected boolean exists(Class<Item> clazz, String id) {
+        String streamId = streamNameGenerator().streamNameFor(clazz, id);
+        return mightExist(streamId) && streams.containsKey(streamId);
+    }
+
+    @Override
+    protected void loadFromStream(Item obj, String streamId) {
+        streamReads.incrementAndGet();
+        List<List<Event>> commits = streams.get(streamId);
+        if (commits == null)
+            throw new IllegalStateException("Trying to load from nonexisting stream: " + streamId);
+        List<Event> events = new ArrayList<>();
+        synchronized (commits) {
+            for (List<Event> commit : commits)
+                events.addAll(commit);
+            EventSourcingUtil.loadEventStreamIntoObject(obj, commits.size(), events);
+        }
+    }
+
+    @Override
+    protected EventSourcingBus<Event> busForAdd(final String streamId) {
+        return new TestBus() {
+            @Override
+            public void commit(String commitId) {
+                List<List<Event>> commits = new ArrayList<>();
+                commits.add(events);
+                if (streams.containsKey(streamId) || streams.put(streamId, commits) != null)
+                    throw new IllegalStateException("Stream already exists: " + streamId);
+            }
+        };
+    }
+
+    @Override
+    protected EventSourcingBus<Event> busForSave(final String streamId, final long version) {
+        return new TestBus() {
+            @Override
+            public void commit(String commitId) {
+                List<List<Event>> commits = streams.get(streamId);
+                synchronized (commits) {
+                    if (commits.size() != version)
+                        throw new ConcurrencyConflictException(streamId,
+                                "Concurrent modification of stream " + streamId);
+                    commits.add(events);
+                }
+            }
+        };
+    }
+
+    private abstract static class TestBus implements EventSourcingBus<Event> {
+        final List<Event> events = new ArrayList<>();
+        @Override
+        public void store(Event event) {
+            events.add(event);
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.jeecqrs.common.Identifiable;
+import org.jeecqrs.common.event.Event;
+import org.jeecqrs.common.event.sourcing.EventSourcingBus;
+import org.jeecqrs.common.event.sourcing.Load;
+import org.jeecqrs.common.event.sourcing.Store;
+import org.jeecqrs.common.event.sourcing.Version;
+
+public class Item implements Identifiable<String> {
+
+    String id;
+    int counter;
+    private long version;
+    private final List<Event> changes = new ArrayList<>();
+
+    Item() { }
+
+    public Item(String id) {
+        apply(new ItemChanged(id, 0));
+    }
+
+    public void increase(int amount) {
+        apply(new ItemChanged(id, amount));
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    private void apply(ItemChanged event) {
+        changes.add(event);
+        when(event);
+    }
+
+    private void when(ItemChanged event) {
+        this.id = event.id;
+        this.counter += event.amount;
+    }
+
+    @Load
+    private void load(long version, Iterator<Event> events) {
+        while (events.hasNext())
+            when((ItemChanged) events.next());
+        this.version = version;
+    }
+
+    @Store
+    private void store(EventSourcingBus<Event> bus) {
+        for (Event ev : changes)
+            bus.store(ev);
+        changes.clear();
+        version++;
+    }
+
+    @Version
+    private long version() {
+        return version;
+    }
+
+}
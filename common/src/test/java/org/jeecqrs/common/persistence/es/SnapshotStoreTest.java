@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.jeecqrs.common.event.sourcing.Snapshot;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class SnapshotStoreTest {
+
+    @Test
+    public void testInMemoryStore() {
+        assertKeepsNewestSnapshot(new InMemorySnapshotStore());
+    }
+
+    @Test
+    public void testFileStore() throws IOException {
+        Path dir = Files.createTempDirectory("snapshots");
+        try {
+            FileSnapshotStore store = new FileSnapshotStore(dir);
+            assertKeepsNewestSnapshot(store);
+            Snapshot read = new FileSnapshotStore(dir).latest("Stream/1");
+            assertEquals(read.eventCount(), 20l);
+            assertEquals(read.state(), "twenty");
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files)
+                    Files.delete(file);
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private void assertKeepsNewestSnapshot(SnapshotStore store) {
+        assertNull(store.latest("Stream/1"));
+        store.save("Stream/1", new Snapshot(1, 10, "ten"));
+        store.save("Stream/1", new Snapshot(3, 20, "twenty"));
+        store.save("Stream/1", new Snapshot(2, 15, "fifteen"));
+        store.save("Stream/2", new Snapshot(1, 5, "five"));
+        Snapshot latest = store.latest("Stream/1");
+        assertEquals(latest.version(), 3l);
+        assertEquals(latest.eventCount(), 20l);
+        assertEquals(latest.state(), "twenty");
+        assertEquals(store.latest("Stream/2").state(), "five");
+    }
+
+}
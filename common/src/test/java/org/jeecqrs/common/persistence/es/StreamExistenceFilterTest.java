@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+
+package org.jeecqrs.common.persistence.es;
+
+import java.util.Arrays;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class StreamExistenceFilterTest {
+
+    @Test
+    public void testNoFalseNegatives() {
+        StreamExistenceFilter filter = new StreamExistenceFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++)
+            filter.add("stream:" + i);
+        filter.markSeeded();
+        for (int i = 0; i < 1000; i++)
+            assertTrue(filter.mightExist("stream:" + i));
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        StreamExistenceFilter filter = new StreamExistenceFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++)
+            filter.add("stream:" + i);
+        filter.markSeeded();
+        int positives = 0;
+        for (int i = 0; i < 10000; i++)
+            if (filter.mightExist("other:" + i))
+                positives++;
+        assertTrue(positives < 300, "false positives: " + positives);
+    }
+
+    @Test
+    public void testSizing() {
+        StreamExistenceFilter filter = new StreamExistenceFilter(1000, 0.01);
+        assertTrue(filter.bitSize() >= 9586);
+        assertEquals(filter.hashCount(), 7);
+        filter.markSeeded();
+        assertFalse(filter.mightExist("stream"));
+    }
+
+    @Test
+    public void testUnseededFilterKnowsNothing() {
+        StreamExistenceFilter filter = new StreamExistenceFilter(1000, 0.01);
+        assertFalse(filter.isSeeded());
+        assertTrue(filter.mightExist("stream"), "unseeded filter must not hide streams");
+        filter.addAll(Arrays.asList("a", "b"));
+        assertTrue(filter.mightExist("stream"));
+        filter.markSeeded();
+        assertTrue(filter.isSeeded());
+        assertTrue(filter.mightExist("a"));
+        assertFalse(filter.mightExist("stream"));
+    }
+
+}
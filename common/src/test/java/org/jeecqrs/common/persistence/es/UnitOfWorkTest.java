@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.es;
+
+import java.util.ArrayList;
+import java.util.List;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class UnitOfWorkTest {
+
+    @Test
+    public void testCommitsEachStream() {
+        InMemoryTestRepository repo = new InMemoryTestRepository();
+        repo.add(new Item("a"), "c0");
+        Item a = repo.ofIdentity("a");
+        Item stale = repo.ofIdentity("a");
+        a.increase(3);
+        repo.save(a, "c1");
+
+        UnitOfWork<Item, String, String> uow = repo.unitOfWork();
+        Item b = new Item("b");
+        uow.registerNew(b);
+        stale.increase(1);
+        uow.registerDirty(stale);
+        uow.registerNew(b);
+        assertEquals(uow.size(), 2);
+
+        UnitOfWorkResult result = uow.commit("c2");
+        assertFalse(result.isSuccess());
+        assertEquals(result.results().size(), 2);
+        assertTrue(result.results().get(0).isSuccess());
+        assertEquals(result.results().get(0).eventCount(), 1);
+        assertEquals(result.failures().size(), 1);
+        assertTrue(result.failures().get(0).failure() instanceof ConcurrencyConflictException);
+        assertEquals(repo.ofIdentity("b").id(), "b");
+        assertEquals(repo.ofIdentity("a").counter, 3);
+        assertEquals(uow.size(), 0);
+    }
+
+    @Test
+    public void testRollsBackTransaction() {
+        RecordingTransaction tx = new RecordingTransaction();
+        TransactionalRepository repo = new TransactionalRepository(tx);
+        repo.add(new Item("a"), "c0");
+
+        UnitOfWork<Item, String, String> uow = repo.unitOfWork();
+        uow.registerNew(new Item("b"));
+        uow.registerNew(new Item("a"));
+        UnitOfWorkResult result = uow.commit("c1");
+        assertEquals(tx.calls.toString(), "[begin, rollback]");
+        assertEquals(result.failures().size(), 2, "all streams fail together");
+    }
+
+    @Test
+    public void testFailedRollbackKeepsWriteFailure() {
+        RecordingTransaction tx = new RecordingTransaction() {
+            @Override
+            public void rollback() {
+                super.rollback();
+                throw new IllegalStateException("rollback failed");
+            }
+        };
+        TransactionalRepository repo = new TransactionalRepository(tx);
+        repo.add(new Item("a"), "c0");
+        Item stale = repo.ofIdentity("a");
+        Item a = repo.ofIdentity("a");
+        a.increase(1);
+        repo.save(a, "c1");
+
+        UnitOfWork<Item, String, String> uow = repo.unitOfWork();
+        stale.increase(2);
+        uow.registerDirty(stale);
+        UnitOfWorkResult result = uow.commit("c2");
+        assertEquals(tx.calls.toString(), "[begin, rollback]");
+        RuntimeException failure = result.failures().get(0).failure();
+        assertTrue(failure instanceof ConcurrencyConflictException, String.valueOf(failure));
+        assertEquals(failure.getSuppressed().length, 1);
+        assertEquals(failure.getSuppressed()[0].getMessage(), "rollback failed");
+    }
+
+    @Test
+    public void testCommitsTransaction() {
+        RecordingTransaction tx = new RecordingTransaction();
+        TransactionalRepository repo = new TransactionalRepository(tx);
+        UnitOfWork<Item, String, String> uow = repo.unitOfWork();
+        uow.registerNew(new Item("a"));
+        uow.registerNew(new Item("b"));
+        assertTrue(uow.commit("c1").isSuccess());
+        assertEquals(tx.calls.toString(), "[begin, commit]");
+    }
+
+    static class RecordingTransaction implements BatchTransaction {
+        final List<String> calls = new ArrayList<>();
+        @Override
+        public void begin() {
+            calls.add("begin");
+        }
+        @Override
+        public void commit() {
+            calls.add("commit");
+        }
+        @Override
+        public void rollback() {
+            calls.add("rollback");
+        }
+    }
+
+    static class TransactionalRepository extends InMemoryTestRepository {
+        final BatchTransaction tx;
+        TransactionalRepository(BatchTransaction tx) {
+            this.tx = tx;
+        }
+        @Override
+        protected BatchTransaction batchTransaction() {
+            return tx;
+        }
+    }
+
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.jeeventstore.inmemory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.jeecqrs.common.util.Validate;
+import org.jeeventstore.ConcurrencyException;
+import org.jeeventstore.DuplicateCommitException;
+import org.jeeventstore.EventStore;
+import org.jeeventstore.ReadableEventStream;
+import org.jeeventstore.StreamNotFoundException;
+import org.jeeventstore.WritableEventStream;
+
+/**
+ * A thread-safe {@link EventStore} that keeps all streams in memory,
+ * meant for tests and benchmarks of the repositories.
+ * <p>
+ * As in JEEventStore, the version of a stream is its number of commits.
+ * Committing to a stream fails with a {@link ConcurrencyException} if the
+ * stream has been committed to since the writable stream was opened, or
+ * if a stream to be created already exists, and with a
+ * {@link DuplicateCommitException} if the stream already contains a commit
+ * with the same id.  Events are stored by reference, not serialized.
+ * <p>
+ * An optional latency is added to each call that would reach the
+ * persistence of a real event store, to simulate network round trips.
+ */
+public class InMemoryEventStore implements EventStore {
+
+    private final ConcurrentMap<String, ConcurrentMap<String, StoredStream>> buckets =
+            new ConcurrentHashMap<>();
+    private final long latencyNanos;
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+
+    /**
+     * Creates a new event store without latency.
+     */
+    public InMemoryEventStore() {
+        this(0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a new event store that adds the given latency to each
+     * existence check, read and commit.
+     * 
+     * @param latency  the latency per call
+     * @param unit     the unit of {@code latency}
+     */
+    public InMemoryEventStore(long latency, TimeUnit unit) {
+        Validate.isTrue(latency >= 0, "latency must not be negative");
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    @Override
+    public boolean existsStream(String bucketId, String streamId) {
+        pause();
+        return find(bucketId, streamId) != null;
+    }
+
+    @Override
+    public ReadableEventStream openStreamForReading(String bucketId, String streamId) {
+        return openStreamForReading(bucketId, streamId, Long.MAX_VALUE);
+    }
+
+    @Override
+    public ReadableEventStream openStreamForReading(String bucketId, String streamId, long version) {
+        pause();
+        reads.increment();
+        StoredStream stream = find(bucketId, streamId);
+        if (stream == null)
+            throw new StreamNotFoundException("Stream " + streamId + " not found in bucket " + bucketId);
+        return stream.read(version);
+    }
+
+    @Override
+    public WritableEventStream createStream(String bucketId, String streamId) {
+        Validate.notNull(bucketId, "bucketId must not be null");
+        Validate.notNull(streamId, "streamId must not be null");
+        return new WriteStream(bucketId, streamId, 0, true);
+    }
+
+    @Override
+    public WritableEventStream openStreamForWriting(String bucketId, String streamId, long version) {
+        Validate.notNull(bucketId, "bucketId must not be null");
+        Validate.notNull(streamId, "streamId must not be null");
+        if (find(bucketId, streamId) == null)
+            throw new StreamNotFoundException("Stream " + streamId + " not found in bucket " + bucketId);
+        return new WriteStream(bucketId, streamId, version, false);
+    }
+
+    /**
+     * Gets the names of all streams in the bucket, e.g., to seed a
+     * {@link org.jeecqrs.common.persistence.es.StreamExistenceFilter}.
+     * 
+     * @param bucketId  the bucket
+     * @return the names of the streams
+     */
+    public Set<String> streamIds(String bucketId) {
+        ConcurrentMap<String, StoredStream> bucket = buckets.get(bucketId);
+        if (bucket == null)
+            return Collections.emptySet();
+        return Collections.unmodifiableSet(new HashSet<>(bucket.keySet()));
+    }
+
+    /**
+     * Gets the number of streams opened for reading so far.
+     * 
+     * @return the number of reads
+     */
+    public long reads() {
+        return reads.sum();
+    }
+
+    /**
+     * Gets the number of successful commits so far.
+     * 
+     * @return the number of commits
+     */
+    public long commits() {
+        return commits.sum();
+    }
+
+    /**
+     * Removes all streams.
+     */
+    public void clear() {
+        buckets.clear();
+    }
+
+    private StoredStream find(String bucketId, String streamId) {
+        Validate.notNull(bucketId, "bucketId must not be null");
+        Validate.notNull(streamId, "streamId must not be null");
+        ConcurrentMap<String, StoredStream> bucket = buckets.get(bucketId);
+        return bucket == null ? null : bucket.get(streamId);
+    }
+
+    private ConcurrentMap<String, StoredStream> bucket(String bucketId) {
+        ConcurrentMap<String, StoredStream> bucket = buckets.get(bucketId);
+        if (bucket == null) {
+            ConcurrentMap<String, StoredStream> created = new ConcurrentHashMap<>();
+            bucket = buckets.putIfAbsent(bucketId, created);
+            if (bucket == null)
+                bucket = created;
+        }
+        return bucket;
+    }
+
+    private void pause() {
+        if (latencyNanos == 0)
+            return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(latencyNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void commit(WriteStream ws, String commitId)
+            throws ConcurrencyException, DuplicateCommitException {
+        Validate.notNull(commitId, "commitId must not be null");
+        pause();
+        ConcurrentMap<String, StoredStream> bucket = bucket(ws.bucketId);
+        StoredStream stream;
+        if (ws.create) {
+            StoredStream created = new StoredStream(ws.bucketId, ws.streamId);
+            stream = bucket.putIfAbsent(ws.streamId, created);
+            if (stream == null)
+                stream = created;
+        } else {
+            stream = bucket.get(ws.streamId);
+            if (stream == null)
+                throw new StreamNotFoundException("Stream " + ws.streamId + " not found in bucket " + ws.bucketId);
+        }
+        stream.commit(ws.version, commitId, new ArrayList<>(ws.pending));
+        commits.increment();
+    }
+
+    // a stream as persisted: its commits and all their events
+    private static final class StoredStream {
+
+        final String bucketId;
+        final String streamId;
+        final Set<String> commitIds = new HashSet<>();
+        final List<Serializable> events = new ArrayList<>();
+        // end index into events per version, ends.get(v - 1) for version v
+        final List<Integer> ends = new ArrayList<>();
+
+        StoredStream(String bucketId, String streamId) {
+            this.bucketId = bucketId;
+            this.streamId = streamId;
+        }
+
+        synchronized void commit(long expectedVersion, String commitId, List<Serializable> appended)
+                throws ConcurrencyException, DuplicateCommitException {
+            if (commitIds.contains(commitId))
+                throw new DuplicateCommitException("Duplicate commit " + commitId + " on stream " + streamId);
+            if (ends.size() != expectedVersion)
+                throw new ConcurrencyException("Stream " + streamId + " is at version " + ends.size()
+                        + ", expected " + expectedVersion);
+            commitIds.add(commitId);
+            events.addAll(appended);
+            ends.add(events.size());
+        }
+
+        synchronized ReadStream read(long version) {
+            long v = Math.min(version, ends.size());
+            int end = v == 0 ? 0 : ends.get((int) v - 1);
+            // commits only ever append, so the prefix never changes
+            List<Serializable> prefix = new ArrayList<>(events.subList(0, end));
+            return new ReadStream(bucketId, streamId, v, prefix);
+        }
+
+    }
+
+    private static class ReadStream implements ReadableEventStream {
+
+        final String bucketId;
+        final String streamId;
+        final long version;
+        final List<Serializable> events;
+
+        ReadStream(String bucketId, String streamId, long version, List<Serializable> events) {
+            this.bucketId = bucketId;
+            this.streamId = streamId;
+            this.version = version;
+            this.events = events;
+        }
+
+        @Override
+        public String bucketId() {
+            return bucketId;
+        }
+
+        @Override
+        public String streamId() {
+            return streamId;
+        }
+
+        @Override
+        public long version() {
+            return version;
+        }
+
+        @Override
+        public Iterator<Serializable> events() {
+            return Collections.unmodifiableList(events).iterator();
+        }
+
+    }
+
+    private final class WriteStream extends ReadStream implements WritableEventStream {
+
+        final boolean create;
+        final List<Serializable> pending = new ArrayList<>();
+        boolean committed = false;
+
+        WriteStream(String bucketId, String streamId, long version, boolean create) {
+            super(bucketId, streamId, version, Collections.<Serializable>emptyList());
+            this.create = create;
+        }
+
+        @Override
+        public void append(Serializable event) {
+            Validate.notNull(event, "event must not be null");
+            Validate.isTrue(!committed, "stream has already been committed");
+            pending.add(event);
+        }
+
+        @Override
+        public void commit(String commitId) throws DuplicateCommitException, ConcurrencyException {
+            Validate.isTrue(!committed, "stream has already been committed");
+            InMemoryEventStore.this.commit(this, commitId);
+            committed = true;
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.jeecqrs.common.persistence.jeeventstore.inmemory;
+
+import org.jeecqrs.common.AbstractId;
+import org.jeecqrs.common.domain.model.AbstractDomainEvent;
+import org.jeecqrs.common.domain.model.AbstractEventSourcedAggregateRoot;
+
+public class Counter extends AbstractEventSourcedAggregateRoot<Counter, Counter.CounterId> {
+
+    private CounterId id;
+    int value;
+
+    // required for loading
+    private Counter() { }
+
+    public Counter(CounterId id) {
+        apply(new CounterCreated(id));
+    }
+
+    public void increase(int amount) {
+        apply(new CounterIncreased(amount));
+    }
+
+    @Override
+    public CounterId id() {
+        return id;
+    }
+
+    protected void when(CounterCreated event) {
+        this.id = event.id;
+    }
+
+    protected void when(CounterIncreased event) {
+        this.value += event.amount;
+    }
+
+    public static class CounterId extends AbstractId<CounterId> {
+        public CounterId(String id) {
+            super(id);
+        }
+    }
+
+    public static class CounterCreated extends AbstractDomainEvent<CounterCreated> {
+        final CounterId id;
+        public CounterCreated(CounterId id) {
+            this.id = id;
+        }
+    }
+
+    public static class CounterIncreased extends AbstractDomainEvent<CounterIncreased> {
+        final int amount;
+        public CounterIncreased(int amount) {
+            this.amount = amount;
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.jeecqrs.common.persistence.jeeventstore.inmemory;
+
+import org.jeecqrs.common.persistence.es.CanonicalNameEventStreamNameGenerator;
+import org.jeecqrs.common.persistence.es.EventStreamNameGenerator;
+import org.jeecqrs.common.persistence.jeeventstore.AbstractJEEventStoreRepository;
+import org.jeeventstore.EventStore;
+
+public class CounterRepository extends AbstractJEEventStoreRepository<Counter, Counter.CounterId, String> {
+
+    private final EventStore eventStore;
+    private final EventStreamNameGenerator<Counter, Counter.CounterId> esng =
+            new CanonicalNameEventStreamNameGenerator<>();
+
+    public CounterRepository(EventStore eventStore) {
+        super(Counter.class);
+        this.eventStore = eventStore;
+    }
+
+    @Override
+    protected String bucketId() {
+        return "counters";
+    }
+
+    @Override
+    protected EventStore eventStore() {
+        return eventStore;
+    }
+
+    @Override
+    protected EventStreamNameGenerator<Counter, Counter.CounterId> streamNameGenerator() {
+        return esng;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.jeecqrs.common.persistence.jeeventstore.inmemory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.jeeventstore.ConcurrencyException;
+import org.jeeventstore.DuplicateCommitException;
+import org.jeeventstore.ReadableEventStream;
+import org.jeeventstore.StreamNotFoundException;
+import org.jeeventstore.WritableEventStream;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class InMemoryEventStoreTest {
+
+    @Test
+    public void testCommitAndRead() throws Exception {
+        InMemoryEventStore store = new InMemoryEventStore();
+        assertFalse(store.existsStream("b", "s"));
+        WritableEventStream ws = store.createStream("b", "s");
+        ws.append("e1");
+        ws.append("e2");
+        ws.commit("c1");
+        ws = store.openStreamForWriting("b", "s", 1);
+        ws.append("e3");
+        ws.commit("c2");
+
+        assertTrue(store.existsStream("b", "s"));
+        assertFalse(store.existsStream("other", "s"));
+        ReadableEventStream rs = store.openStreamForReading("b", "s");
+        assertEquals(rs.version(), 2);
+        assertEquals(events(rs), Arrays.<Serializable>asList("e1", "e2", "e3"));
+        rs = store.openStreamForReading("b", "s", 1);
+        assertEquals(rs.version(), 1);
+        assertEquals(events(rs), Arrays.<Serializable>asList("e1", "e2"));
+        assertEquals(store.streamIds("b").size(), 1);
+        assertEquals(store.commits(), 2);
+    }
+
+    @Test(expectedExceptions = ConcurrencyException.class)
+    public void testConcurrentModification() throws Exception {
+        InMemoryEventStore store = new InMemoryEventStore();
+        WritableEventStream ws = store.createStream("b", "s");
+        ws.append("e1");
+        ws.commit("c1");
+        WritableEventStream first = store.openStreamForWriting("b", "s", 1);
+        WritableEventStream second = store.openStreamForWriting("b", "s", 1);
+        first.append("e2");
+        first.commit("c2");
+        second.append("e3");
+        second.commit("c3");
+    }
+
+    @Test(expectedExceptions = ConcurrencyException.class)
+    public void testCreateExisting() throws Exception {
+        InMemoryEventStore store = new InMemoryEventStore();
+        store.createStream("b", "s").commit("c1");
+        store.createStream("b", "s").commit("c2");
+    }
+
+    @Test(expectedExceptions = DuplicateCommitException.class)
+    public void testDuplicateCommit() throws Exception {
+        InMemoryEventStore store = new InMemoryEventStore();
+        store.createStream("b", "s").commit("c1");
+        store.openStreamForWriting("b", "s", 1).commit("c1");
+    }
+
+    @Test(expectedExceptions = StreamNotFoundException.class)
+    public void testReadMissing() {
+        new InMemoryEventStore().openStreamForReading("b", "s");
+    }
+
+    private static List<Serializable> events(ReadableEventStream stream) {
+        List<Serializable> list = new ArrayList<>();
+        Iterator<Serializable> it = stream.events();
+        while (it.hasNext())
+            list.add(it.next());
+        return list;
+    }
+
+}
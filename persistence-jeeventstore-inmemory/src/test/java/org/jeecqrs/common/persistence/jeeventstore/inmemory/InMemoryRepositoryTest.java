@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.jeecqrs.common.persistence.jeeventstore.inmemory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.jeecqrs.common.persistence.es.BatchTransaction;
+import org.jeecqrs.common.persistence.es.RetryPolicy;
+import org.jeecqrs.common.persistence.es.StripedLock;
+import org.jeecqrs.common.persistence.jeeventstore.GroupCommitter;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class InMemoryRepositoryTest {
+
+    @Test
+    public void testAddLoadSave() {
+        CounterRepository repo = new CounterRepository(new InMemoryEventStore());
+        Counter.CounterId id = new Counter.CounterId("a");
+        repo.add(new Counter(id), "c1");
+        Counter counter = repo.ofIdentity(id);
+        counter.increase(3);
+        repo.save(counter, "c2");
+        assertEquals(repo.ofIdentity(id).value, 3);
+        assertTrue(repo.exists(id));
+        assertFalse(repo.exists(new Counter.CounterId("b")));
+    }
+
+    @Test
+    public void testConcurrentExecute() throws Exception {
+        final CounterRepository repo = new RetryingRepository(new InMemoryEventStore());
+        final Counter.CounterId id = new Counter.CounterId("a");
+        repo.add(new Counter(id), "c0");
+        increaseConcurrently(repo, id, 40);
+        assertEquals(repo.ofIdentity(id).value, 40);
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        InMemoryEventStore store = new InMemoryEventStore(1, TimeUnit.MILLISECONDS);
+        GroupCommitter committer = new GroupCommitter(store, new NoTransaction(),
+                16, 1, TimeUnit.MILLISECONDS);
+        GroupCommittingRepository repo = new GroupCommittingRepository(store, committer);
+        List<Counter.CounterId> ids = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            ids.add(new Counter.CounterId("c" + i));
+            repo.add(new Counter(ids.get(i)), "add" + i);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 80; i++) {
+                final Counter.CounterId id = ids.get(i % ids.size());
+                final String commitId = "inc" + i;
+                futures.add(executor.submit(() -> repo.execute(id, commitId, c -> c.increase(1))));
+            }
+            for (Future<?> f : futures)
+                f.get();
+        } finally {
+            executor.shutdown();
+        }
+        for (Counter.CounterId id : ids)
+            assertEquals(repo.ofIdentity(id).value, 10);
+        assertTrue(committer.groups() < committer.commits(),
+                committer.groups() + " groups for " + committer.commits() + " commits");
+    }
+
+    private static void increaseConcurrently(final CounterRepository repo, final Counter.CounterId id, int times)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < times; i++) {
+                final String commitId = "c" + (i + 1);
+                futures.add(executor.submit(() -> repo.execute(id, commitId, c -> c.increase(1))));
+            }
+            for (Future<?> f : futures)
+                f.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    static class RetryingRepository extends CounterRepository {
+        RetryingRepository(InMemoryEventStore store) {
+            super(store);
+        }
+        @Override
+        protected RetryPolicy retryPolicy() {
+            return new RetryPolicy(1000, 0, 0);
+        }
+    }
+
+    // serializes the writers of a stream, so a group never holds two
+    // commits to the same stream that could conflict
+    static class GroupCommittingRepository extends RetryingRepository {
+        final GroupCommitter committer;
+        final StripedLock locks = new StripedLock(64);
+        GroupCommittingRepository(InMemoryEventStore store, GroupCommitter committer) {
+            super(store);
+            this.committer = committer;
+        }
+        @Override
+        protected GroupCommitter groupCommitter() {
+            return committer;
+        }
+        @Override
+        protected StripedLock writeLocks() {
+            return locks;
+        }
+    }
+
+    // the in-memory store cannot roll back, so a group must never be
+    // rolled back and written again; GroupCommitterTest covers conflicts
+    // within a group against a store that can
+    static class NoTransaction implements BatchTransaction {
+        @Override
+        public void begin() { }
+        @Override
+        public void commit() { }
+        @Override
+        public void rollback() { }
+    }
+
+}
@@ -31,8 +31,10 @@ public abstract class AbstractMultiTenancyEventStoreRepository<
             TID extends Identity>
         extends AbstractJEEventStoreARRepository<T, MultiTenancyId<TID, OID>, org.jeecqrs.common.Identity> {
 
+    private final EventStreamNameGenerator<T, MultiTenancyId<TID, OID>> esng = new MultiTenancyCanonicalNameESNG<>();
+
     public boolean exists(TID tenantId, OID id) {
-        MultiTenancyId mtid = new MultiTenancyId(tenantId, id);
+        MultiTenancyId<TID, OID> mtid = new MultiTenancyId<>(tenantId, id);
         return super.exists(objectType(), mtid);
     }
 
@@ -43,7 +45,7 @@ public abstract class AbstractMultiTenancyEventStoreRepository<
 
     @Override
     protected EventStreamNameGenerator<T, MultiTenancyId<TID, OID>> streamNameGenerator() {
-        return new MultiTenancyCanonicalNameESNG<>();
+        return esng;
     }
     
 }
\ No newline at end of file
@@ -21,12 +21,16 @@
 
 package org.jeecqrs.common.persistence.jeeventstore;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.jeecqrs.common.domain.model.multitenancy.AbstractTenantESAR;
 import org.jeecqrs.common.Identity;
 import org.jeecqrs.common.persistence.es.EventStreamNameGenerator;
 
 /**
  * Provides the tenantId and the class's canonical name as a name for the event stream.
+ * The {@code "<tenantId>:<canonical name>:"} prefix is cached per class and tenant,
+ * so instances are cheap and can be shared between threads.
  * 
  * @param <T>    the base type of objects that can be identified with this streamNameGenreator
  * @param <OID>  the type of the object identifier
@@ -38,6 +42,20 @@ public class MultiTenancyCanonicalNameESNG<
             TID extends Identity>
         implements EventStreamNameGenerator<T, MultiTenancyId<TID, OID>> {
 
+    /**
+     * Maximum number of tenant prefixes cached per class.
+     */
+    static final int MAX_CACHED_TENANTS = 1024;
+
+    // per class: tenant id string -> "<tenant>:<canonical name>:"
+    private static final ClassValue<ConcurrentMap<String, String>> prefixes =
+            new ClassValue<ConcurrentMap<String, String>>() {
+        @Override
+        protected ConcurrentMap<String, String> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
     @Override
     public String streamNameFor(T obj) {
         return build((Class) obj.getClass(), obj.tenantId(), obj.id());
@@ -49,13 +67,19 @@ public class MultiTenancyCanonicalNameESNG<
     }
 
     private String build(Class<? extends AbstractTenantESAR<?, ?, ?>> clazz, TID tenantId, Identity objId) {
-        return new StringBuilder()
-                .append(tenantId.toString())
-                .append(":")
-                .append(clazz.getCanonicalName())
-    		.append(":")
-		.append(objId.toString())
-		.toString();
+        return prefixFor(clazz, tenantId.toString()).concat(objId.toString());
+    }
+
+    static String prefixFor(Class<?> clazz, String tenant) {
+        ConcurrentMap<String, String> cache = prefixes.get(clazz);
+        String prefix = cache.get(tenant);
+        if (prefix == null) {
+            prefix = tenant + ":" + clazz.getCanonicalName() + ":";
+            // no need to synchronize, since result is deterministic
+            if (cache.size() < MAX_CACHED_TENANTS)
+                cache.put(tenant, prefix);
+        }
+        return prefix;
     }
 
 }
@@ -22,15 +22,28 @@
 package org.jeecqrs.common.persistence.jeeventstore;
 
 import org.jeecqrs.common.Identity;
+import org.jeecqrs.common.util.Validate;
 
+/**
+ * Identifies an object within a tenant.
+ * Two instances are equal if both their tenant and object ids are equal,
+ * so instances can be used as keys for repository caches.
+ * 
+ * @param <TID>  the type of the tenant identifier
+ * @param <OID>  the type of the object identifier
+ */
 public class MultiTenancyId<TID extends Identity, OID extends Identity> {
 
     private final TID tenantId;
     private final OID objectId;
+    private final int hash;
 
     public MultiTenancyId(TID tenantId, OID objectId) {
+        Validate.notNull(tenantId, "tenantId must not be null");
+        Validate.notNull(objectId, "objectId must not be null");
         this.tenantId = tenantId;
         this.objectId = objectId;
+        this.hash = 31 * tenantId.hashCode() + objectId.hashCode();
     }
 
     public TID tenantId() {
@@ -40,5 +53,27 @@ public class MultiTenancyId<TID extends Identity, OID extends Identity> {
     public OID objectId() {
         return objectId;
     }
-    
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof MultiTenancyId))
+            return false;
+        MultiTenancyId<?, ?> other = (MultiTenancyId<?, ?>) obj;
+        return hash == other.hash
+                && tenantId.equals(other.tenantId)
+                && objectId.equals(other.objectId);
+    }
+
+    @Override
+    public String toString() {
+        return tenantId + ":" + objectId;
+    }
+
 }
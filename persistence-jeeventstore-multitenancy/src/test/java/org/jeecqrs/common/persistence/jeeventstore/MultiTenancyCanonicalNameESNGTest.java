@@ -0,0 +1,50 @@
+package org.jeecqrs.common.persistence.jeeventstore;
+
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class MultiTenancyCanonicalNameESNGTest {
+
+    private final MultiTenancyCanonicalNameESNG<TenantItem, TestId, TestId> esng =
+            new MultiTenancyCanonicalNameESNG<>();
+
+    @Test
+    public void testStreamName() {
+        String expected = "t:" + TenantItem.class.getCanonicalName() + ":o";
+        assertEquals(esng.streamNameFor(TenantItem.class,
+                new MultiTenancyId<>(new TestId("t"), new TestId("o"))), expected);
+        assertEquals(esng.streamNameFor(new TenantItem(new TestId("t"), new TestId("o"))), expected);
+    }
+
+    @Test
+    public void testPrefixIsCached() {
+        String prefix = MultiTenancyCanonicalNameESNG.prefixFor(TenantItem.class, "cached");
+        assertEquals(prefix, "cached:" + TenantItem.class.getCanonicalName() + ":");
+        assertSame(MultiTenancyCanonicalNameESNG.prefixFor(TenantItem.class, "cached"), prefix);
+    }
+
+    @Test
+    public void testCachedTenantsAreCapped() {
+        int max = MultiTenancyCanonicalNameESNG.MAX_CACHED_TENANTS;
+        for (int i = 0; i < max; i++)
+            MultiTenancyCanonicalNameESNG.prefixFor(CappedItem.class, "t" + i);
+        String first = MultiTenancyCanonicalNameESNG.prefixFor(CappedItem.class, "t0");
+        assertSame(MultiTenancyCanonicalNameESNG.prefixFor(CappedItem.class, "t0"), first,
+                "tenants within the cap stay cached");
+
+        String beyond = MultiTenancyCanonicalNameESNG.prefixFor(CappedItem.class, "t" + max);
+        assertEquals(beyond, "t" + max + ":" + CappedItem.class.getCanonicalName() + ":");
+        assertNotSame(MultiTenancyCanonicalNameESNG.prefixFor(CappedItem.class, "t" + max), beyond,
+                "tenants beyond the cap are not cached");
+        assertEquals(esng.streamNameFor(CappedItem.class,
+                new MultiTenancyId<>(new TestId("t" + max), new TestId("o"))), beyond + "o");
+    }
+
+    // has its own prefix cache, which this test fills up
+    public static class CappedItem extends TenantItem {
+        public CappedItem(TestId tenantId, TestId id) {
+            super(tenantId, id);
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+package org.jeecqrs.common.persistence.jeeventstore;
+
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class MultiTenancyIdTest {
+
+    @Test
+    public void testEqualsAndHashCode() {
+        MultiTenancyId<TestId, TestId> id = new MultiTenancyId<>(new TestId("t"), new TestId("o"));
+        MultiTenancyId<TestId, TestId> same = new MultiTenancyId<>(new TestId("t"), new TestId("o"));
+        assertEquals(id, id);
+        assertEquals(id, same);
+        assertEquals(same, id);
+        assertEquals(id.hashCode(), same.hashCode());
+        assertFalse(id.equals(null));
+        assertFalse(id.equals("t:o"));
+        assertEquals(id.toString(), "t:o");
+    }
+
+    @Test
+    public void testDifferentPartsAreNotEqual() {
+        MultiTenancyId<TestId, TestId> id = new MultiTenancyId<>(new TestId("t"), new TestId("o"));
+        assertNotEquals(id, new MultiTenancyId<>(new TestId("u"), new TestId("o")));
+        assertNotEquals(id, new MultiTenancyId<>(new TestId("t"), new TestId("p")));
+        // swapping tenant and object id changes the identity
+        assertNotEquals(id, new MultiTenancyId<>(new TestId("o"), new TestId("t")));
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullTenantIdIsRejected() {
+        new MultiTenancyId<>(null, new TestId("o"));
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullObjectIdIsRejected() {
+        new MultiTenancyId<>(new TestId("t"), null);
+    }
+
+}
@@ -0,0 +1,19 @@
+package org.jeecqrs.common.persistence.jeeventstore;
+
+import org.jeecqrs.common.domain.model.multitenancy.AbstractTenantESAR;
+
+public class TenantItem extends AbstractTenantESAR<TenantItem, TestId, TestId> {
+
+    private final TestId id;
+
+    public TenantItem(TestId tenantId, TestId id) {
+        this.id = id;
+        setTenantId(tenantId);
+    }
+
+    @Override
+    public TestId id() {
+        return id;
+    }
+
+}
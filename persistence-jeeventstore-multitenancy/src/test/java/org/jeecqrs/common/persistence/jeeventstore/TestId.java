@@ -0,0 +1,11 @@
+package org.jeecqrs.common.persistence.jeeventstore;
+
+import org.jeecqrs.common.AbstractId;
+
+public class TestId extends AbstractId<TestId> {
+
+    public TestId(String idString) {
+        super(idString);
+    }
+
+}
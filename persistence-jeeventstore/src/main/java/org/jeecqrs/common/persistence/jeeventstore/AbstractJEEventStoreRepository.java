@@ -21,18 +21,26 @@
 
 package org.jeecqrs.common.persistence.jeeventstore;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.transaction.UserTransaction;
 import org.jeecqrs.common.event.Event;
 import org.jeecqrs.common.event.sourcing.EventSourcingBus;
 import org.jeecqrs.common.event.sourcing.EventSourcingUtil;
+import org.jeecqrs.common.event.sourcing.InstanceFactory;
+import org.jeecqrs.common.event.sourcing.Snapshot;
 import org.jeecqrs.common.persistence.es.AbstractEventSourcingRepository;
+import org.jeecqrs.common.persistence.es.BatchTransaction;
+import org.jeecqrs.common.persistence.es.ConcurrencyConflictException;
 import org.jeeventstore.ConcurrencyException;
 import org.jeeventstore.DuplicateCommitException;
 import org.jeeventstore.EventStore;
 import org.jeeventstore.ReadableEventStream;
 import org.jeeventstore.StreamNotFoundException;
 import org.jeeventstore.WritableEventStream;
-import org.jeeventstore.util.IteratorUtils;
 
 /**
  *
@@ -41,6 +49,8 @@ import org.jeeventstore.util.IteratorUtils;
 public abstract class AbstractJEEventStoreRepository<T, ID, CID> 
     extends AbstractEventSourcingRepository<T, ID, CID> {
 
+    private final Logger log = Logger.getLogger(this.getClass().getCanonicalName());
+
     public AbstractJEEventStoreRepository() {
     }
 
@@ -53,33 +63,147 @@ public abstract class AbstractJEEventStoreRepository<T, ID, CID>
 
     @Override
     protected T createFreshInstance(Class<T> clazz, ID id) {
-        return EventSourcingUtil.createByDefaultConstructor(clazz);
+        return instanceFactory(clazz).newInstance();
+    }
+
+    /**
+     * Gets the factory used to create fresh instances before loading them
+     * from their event stream.
+     * Defaults to the shared per-class factory that invokes the default
+     * constructor, override to plug in a custom factory.
+     * 
+     * @param clazz  the class to instantiate
+     * @return the factory for the class
+     */
+    protected InstanceFactory<T> instanceFactory(Class<T> clazz) {
+        return EventSourcingUtil.instanceFactoryFor(clazz);
+    }
+
+    /**
+     * Gets the bean-managed transaction used to commit a unit of work
+     * atomically.  Returns {@code null} by default, i.e., the streams of a
+     * unit of work are committed independently.
+     * 
+     * @return the transaction, or {@code null}
+     */
+    protected UserTransaction userTransaction() {
+        return null;
+    }
+
+    @Override
+    protected BatchTransaction batchTransaction() {
+        UserTransaction transaction = userTransaction();
+        if (transaction == null)
+            return null;
+        if (groupCommitter() != null)
+            throw new IllegalStateException("Atomic units of work cannot be used with group commit");
+        return new UserTransactionBatchTransaction(transaction);
+    }
+
+    /**
+     * Gets the group committer that writes the commits of this repository.
+     * Returns {@code null} by default, i.e., each commit is written to the
+     * event store on its own.  Since commits of a group are written by the
+     * leading thread, group commit cannot be combined with atomic units of
+     * work, see {@link #userTransaction()}, and commits made within a
+     * transaction of the caller bypass the group.  The event store's writes
+     * must be transactional, see {@link GroupCommitter}.
+     * 
+     * @return the group committer, or {@code null}
+     */
+    protected GroupCommitter groupCommitter() {
+        return null;
     }
 
+    @Override
     protected boolean exists(Class<T> clazz, ID id) {
         String streamId = streamNameGenerator().streamNameFor(clazz, id);
-        return eventStore().existsStream(bucketId(), streamId);
+        return mightExist(streamId) && eventStore().existsStream(bucketId(), streamId);
     }
 
     @Override
     protected void loadFromStream(T obj, String streamId) {
         try {
             ReadableEventStream stream = eventStore().openStreamForReading(bucketId(), streamId);
-            List<Event> events = (List) IteratorUtils.toList(stream.events());
+            Iterator<Event> events = (Iterator) stream.events();
             EventSourcingUtil.loadEventStreamIntoObject(obj, stream.version(), events);
         } catch (StreamNotFoundException e) {
-            throw new IllegalStateException("Trying to load from nonexisting stream: " + streamId, e);
+            throw new MissingStreamException("Trying to load from nonexisting stream: " + streamId, e);
         }
     }
 
+    /**
+     * Restores the object from the snapshot and the events that follow it.
+     * The event store always reads streams from the start, so the events
+     * covered by the snapshot are skipped without applying them.  If the
+     * stream does not match the snapshot, all events are replayed.
+     */
+    @Override
+    protected void loadFromStream(T obj, String streamId, Snapshot snapshot) {
+        try {
+            ReadableEventStream stream = eventStore().openStreamForReading(bucketId(), streamId);
+            Iterator<Event> events = (Iterator) stream.events();
+            if (snapshot.version() > stream.version() || !skip(events, snapshot.eventCount())) {
+                log.log(Level.WARNING, "Snapshot {0} does not match stream {1}, replaying all events",
+                        new Object[]{snapshot, streamId});
+                loadFromStream(obj, streamId);
+                return;
+            }
+            EventSourcingUtil.restoreSnapshotIntoObject(obj, snapshot, stream.version(), events);
+        } catch (StreamNotFoundException e) {
+            throw new MissingStreamException("Trying to load from nonexisting stream: " + streamId, e);
+        }
+    }
+
+    /**
+     * Applies the events the object has not seen yet.
+     * The event store always reads streams from the start, so the events
+     * the object has already applied are skipped without applying them.
+     */
+    @Override
+    protected void catchUpFromStream(T obj, String streamId) {
+        long version = retrieveVersion(obj);
+        try {
+            ReadableEventStream stream = eventStore().openStreamForReading(bucketId(), streamId);
+            if (stream.version() == version)
+                return;
+            Iterator<Event> events = (Iterator) stream.events();
+            EventSourcingUtil.catchUpObject(obj, stream.version(), events);
+        } catch (StreamNotFoundException e) {
+            throw new IllegalStateException("Trying to catch up from nonexisting stream: " + streamId, e);
+        }
+    }
+
+    // thrown when loading from a stream that does not exist
+    static final class MissingStreamException extends IllegalStateException {
+        MissingStreamException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private static boolean skip(Iterator<?> events, long count) {
+        for (long i = 0; i < count; i++) {
+            if (!events.hasNext())
+                return false;
+            events.next();
+        }
+        return true;
+    }
+
     @Override
     protected EventSourcingBus<Event> busForAdd(String streamId) {
+        GroupCommitter committer = groupCommitter();
+        if (committer != null)
+            return busForGroup(committer, streamId, true, 0);
         WritableEventStream stream = eventStore().createStream(bucketId(), streamId);
         return busForStream(stream);
     }
 
     @Override
     protected EventSourcingBus<Event> busForSave(String streamId, long version) {
+        GroupCommitter committer = groupCommitter();
+        if (committer != null)
+            return busForGroup(committer, streamId, false, version);
         WritableEventStream stream = eventStore().openStreamForWriting(bucketId(), streamId, version);
         return busForStream(stream);
     }
@@ -97,6 +221,50 @@ public abstract class AbstractJEEventStoreRepository<T, ID, CID>
         };
     }
 
+    private EventSourcingBus<Event> busForGroup(final GroupCommitter committer,
+            final String streamId, final boolean create, final long version) {
+        return new EventSourcingBus<Event>() {
+            private List<Event> events = new ArrayList<>();
+            // whether events is a list handed over by storeAll
+            private boolean borrowed = false;
+            @Override
+            public void store(Event event) {
+                own();
+                events.add(event);
+            }
+            @Override
+            public void storeAll(List<? extends Event> batch) {
+                if (events.isEmpty()) {
+                    events = (List<Event>) batch;
+                    borrowed = true;
+                } else {
+                    own();
+                    events.addAll(batch);
+                }
+            }
+            private void own() {
+                if (borrowed) {
+                    events = new ArrayList<>(events);
+                    borrowed = false;
+                }
+            }
+            @Override
+            public void commit(String commitId) {
+                try {
+                    if (create)
+                        committer.commitNew(bucketId(), streamId, events, commitId);
+                    else
+                        committer.commit(bucketId(), streamId, version, events, commitId);
+                } catch (ConcurrencyException e) {
+                    throw new ConcurrencyConflictException(streamId,
+                            "committing changes failed: " + e.getMessage(), e);
+                } catch (DuplicateCommitException e) {
+                    throw new RuntimeException("committing changes failed: " + e.getMessage(), e);
+                }
+            }
+        };
+    }
+
     protected void appendToStream(WritableEventStream stream, Event event) {
         stream.append(event);
     }
@@ -104,7 +272,10 @@ public abstract class AbstractJEEventStoreRepository<T, ID, CID>
     protected void commitChanges(WritableEventStream stream, String commitId) {
         try {
             stream.commit(commitId);
-        } catch (DuplicateCommitException | ConcurrencyException e) {
+        } catch (ConcurrencyException e) {
+            throw new ConcurrencyConflictException(stream.streamId(),
+                    "committing changes failed: " + e.getMessage(), e);
+        } catch (DuplicateCommitException e) {
             throw new RuntimeException("committing changes failed: " + e.getMessage(), e);
         }
     }
@@ -34,13 +34,23 @@ public abstract class AbstractJEEventStoreSagaRepository<T extends Identifiable<
 
     private EventStreamNameGenerator<T, String> esng = new CanonicalNameEventStreamNameGenerator<>();
 
+    /**
+     * Loads the saga, or returns {@code null} if it does not exist.
+     * The stream is opened once, without asking the event store whether it
+     * exists first, and not at all if the {@link #existenceFilter()} knows
+     * that it does not exist.
+     */
     @Override
     protected T ofIdentity(Class<T> clazz, String id) {
         Validate.notNull(id, "id must not be null");
         String streamId = streamNameGenerator().streamNameFor(clazz, id);
-        if (!eventStore().existsStream(bucketId(), streamId))
+        if (!mightExist(streamId))
             return null;
-        return super.ofIdentity(clazz, id);
+        try {
+            return super.ofIdentity(clazz, id);
+        } catch (MissingStreamException e) {
+            return null;
+        }
     }
 
     @Override
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.jeeventstore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.transaction.RollbackException;
+import org.jeecqrs.common.event.Event;
+import org.jeecqrs.common.persistence.es.BatchTransaction;
+import org.jeecqrs.common.util.Validate;
+import org.jeeventstore.ConcurrencyException;
+import org.jeeventstore.DuplicateCommitException;
+import org.jeeventstore.EventStore;
+import org.jeeventstore.WritableEventStream;
+
+/**
+ * Coalesces commits of many threads into groups that are written to the
+ * event store within one transaction, to save the per-commit overhead of
+ * the store when there are many small commits.
+ * <p>
+ * A thread that commits becomes the leader if no other thread is writing
+ * a group, waits up to the configured delay for more commits to arrive,
+ * and writes up to the configured number of pending commits.  The other
+ * threads wait until their commit has been written.  Each commit returns
+ * or fails individually, and only after the transaction that contains it
+ * has been committed.
+ * <p>
+ * If a commit within a group fails, e.g., because of a concurrent
+ * modification, that commit fails, the transaction is rolled back, and
+ * all other commits of the group are written one by one, outside of a
+ * shared transaction.  If committing the transaction reports a rollback,
+ * e.g., because the transaction has been marked rollback-only, all
+ * commits of the group are written one by one, too.  If committing the
+ * transaction fails in any other way, e.g., with a heuristic or unknown
+ * outcome, all commits of the group fail, since they may or may not have
+ * been written.
+ * <p>
+ * Since the commits of a rolled back group are written again, the
+ * transaction must make the writes of the event store atomic.  Event
+ * stores whose writes cannot be rolled back must not be used with group
+ * commit, or else a commit may be written twice.
+ * <p>
+ * The leader writes the commits of the other threads within its own
+ * transaction, so a thread that already runs within a transaction, e.g.,
+ * a container-managed one, never joins a group: its commit is written
+ * immediately within the caller's transaction and does not wait for
+ * other commits.
+ */
+public class GroupCommitter {
+
+    private final Logger log = Logger.getLogger(GroupCommitter.class.getCanonicalName());
+
+    private final EventStore eventStore;
+    private final BatchTransaction transaction;
+    private final int maxGroupSize;
+    private final long maxDelayNanos;
+
+    private final Queue<PendingCommit> queue = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock leader = new ReentrantLock();
+    private final LongAdder groups = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+
+    /**
+     * Creates a new group committer.
+     * 
+     * @param eventStore    the event store to write to
+     * @param transaction   the transaction that spans the commits of a group
+     * @param maxGroupSize  the maximum number of commits per group
+     * @param maxDelay      the maximum time to wait for more commits before writing a group
+     * @param unit          the unit of {@code maxDelay}
+     */
+    public GroupCommitter(EventStore eventStore, BatchTransaction transaction,
+            int maxGroupSize, long maxDelay, TimeUnit unit) {
+        Validate.notNull(eventStore, "eventStore must not be null");
+        Validate.notNull(transaction, "transaction must not be null");
+        Validate.isTrue(maxGroupSize > 0, "maxGroupSize must be positive");
+        Validate.isTrue(maxDelay >= 0, "maxDelay must not be negative");
+        this.eventStore = eventStore;
+        this.transaction = transaction;
+        this.maxGroupSize = maxGroupSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+    }
+
+    /**
+     * Creates a new stream with the given events, as part of a group.
+     * 
+     * @param bucketId  the bucket of the stream
+     * @param streamId  the name of the stream
+     * @param events    the events to append
+     * @param commitId  the identity of the commit
+     * @throws ConcurrencyException  if the stream has been created concurrently
+     * @throws DuplicateCommitException  if the commit has been written before
+     */
+    public void commitNew(String bucketId, String streamId, List<? extends Event> events, String commitId)
+            throws ConcurrencyException, DuplicateCommitException {
+        await(new PendingCommit(bucketId, streamId, true, 0, events, commitId));
+    }
+
+    /**
+     * Appends the events to an existing stream, as part of a group.
+     * 
+     * @param bucketId  the bucket of the stream
+     * @param streamId  the name of the stream
+     * @param version   the version of the stream the events are based on
+     * @param events    the events to append
+     * @param commitId  the identity of the commit
+     * @throws ConcurrencyException  if the stream has been modified concurrently
+     * @throws DuplicateCommitException  if the commit has been written before
+     */
+    public void commit(String bucketId, String streamId, long version, List<? extends Event> events,
+            String commitId) throws ConcurrencyException, DuplicateCommitException {
+        await(new PendingCommit(bucketId, streamId, false, version, events, commitId));
+    }
+
+    /**
+     * Gets the number of groups written so far.
+     * 
+     * @return the number of groups
+     */
+    public long groups() {
+        return groups.sum();
+    }
+
+    /**
+     * Gets the number of commits written so far, both successful and failed.
+     * 
+     * @return the number of commits
+     */
+    public long commits() {
+        return commits.sum();
+    }
+
+    /**
+     * Gets the number of commits that wait to be written.
+     * 
+     * @return the number of queued commits
+     */
+    public int pendingCommits() {
+        return queue.size();
+    }
+
+    private void await(PendingCommit pending) throws ConcurrencyException, DuplicateCommitException {
+        Validate.notNull(pending.bucketId, "bucketId must not be null");
+        Validate.notNull(pending.streamId, "streamId must not be null");
+        Validate.notNull(pending.commitId, "commitId must not be null");
+        if (transaction.isActive()) {
+            // the caller's transaction must not decide about the commits of others
+            groups.increment();
+            commits.increment();
+            write(pending);
+            return;
+        }
+        queue.add(pending);
+        long pollNanos = Math.max(maxDelayNanos, TimeUnit.MICROSECONDS.toNanos(100));
+        boolean interrupted = false;
+        while (pending.done.getCount() > 0) {
+            if (leader.tryLock()) {
+                try {
+                    if (pending.done.getCount() > 0)
+                        writeGroup();
+                } finally {
+                    leader.unlock();
+                }
+            } else {
+                try {
+                    pending.done.await(pollNanos, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    // the commit cannot be withdrawn once queued
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        pending.rethrow();
+    }
+
+    private void writeGroup() {
+        long deadline = System.nanoTime() + maxDelayNanos;
+        long remaining;
+        while (queue.size() < maxGroupSize && (remaining = deadline - System.nanoTime()) > 0)
+            LockSupport.parkNanos(Math.min(remaining, TimeUnit.MICROSECONDS.toNanos(50)));
+        List<PendingCommit> group = new ArrayList<>(maxGroupSize);
+        PendingCommit next;
+        while (group.size() < maxGroupSize && (next = queue.poll()) != null)
+            group.add(next);
+        if (group.isEmpty())
+            return;
+        groups.increment();
+        commits.add(group.size());
+        try {
+            if (group.size() == 1)
+                writeIndividually(group);
+            else
+                writeTogether(group);
+        } finally {
+            // never leave the waiting threads behind, e.g., after an Error
+            for (PendingCommit pending : group)
+                if (pending.done.getCount() > 0)
+                    pending.fail(new IllegalStateException("Group commit aborted"));
+        }
+    }
+
+    private void writeTogether(List<PendingCommit> group) {
+        try {
+            transaction.begin();
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Cannot begin transaction for group commit, committing individually", e);
+            writeIndividually(group);
+            return;
+        }
+        for (PendingCommit pending : group) {
+            try {
+                write(pending);
+            } catch (Exception | Error e) {
+                pending.fail(e);
+                rollback();
+                List<PendingCommit> others = new ArrayList<>(group);
+                others.remove(pending);
+                log.log(Level.FINE, "Commit failed within group, committing the others individually", e);
+                writeIndividually(others);
+                return;
+            }
+        }
+        try {
+            transaction.commit();
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof RollbackException) {
+                log.log(Level.FINE, "Group commit rolled back, committing individually", e);
+                writeIndividually(group);
+                return;
+            }
+            // heuristic or unknown outcome, the commits may or may not have been written
+            for (PendingCommit pending : group)
+                pending.fail(e);
+            return;
+        }
+        for (PendingCommit pending : group)
+            pending.succeed();
+    }
+
+    private void writeIndividually(List<PendingCommit> group) {
+        for (PendingCommit pending : group) {
+            try {
+                write(pending);
+                pending.succeed();
+            } catch (Exception | Error e) {
+                pending.fail(e);
+            }
+        }
+    }
+
+    private void write(PendingCommit pending) throws ConcurrencyException, DuplicateCommitException {
+        WritableEventStream stream = pending.create
+                ? eventStore.createStream(pending.bucketId, pending.streamId)
+                : eventStore.openStreamForWriting(pending.bucketId, pending.streamId, pending.version);
+        for (Event event : pending.events)
+            stream.append(event);
+        stream.commit(pending.commitId);
+    }
+
+    private void rollback() {
+        try {
+            transaction.rollback();
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Cannot roll back group commit", e);
+        }
+    }
+
+    private static final class PendingCommit {
+
+        final String bucketId;
+        final String streamId;
+        final boolean create;
+        final long version;
+        final List<? extends Event> events;
+        final String commitId;
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Throwable failure;
+
+        PendingCommit(String bucketId, String streamId, boolean create, long version,
+                List<? extends Event> events, String commitId) {
+            this.bucketId = bucketId;
+            this.streamId = streamId;
+            this.create = create;
+            this.version = version;
+            this.events = events;
+            this.commitId = commitId;
+        }
+
+        void succeed() {
+            done.countDown();
+        }
+
+        void fail(Throwable t) {
+            failure = t;
+            done.countDown();
+        }
+
+        void rethrow() throws ConcurrencyException, DuplicateCommitException {
+            Throwable t = failure;
+            if (t == null)
+                return;
+            if (t instanceof ConcurrencyException)
+                throw (ConcurrencyException) t;
+            if (t instanceof DuplicateCommitException)
+                throw (DuplicateCommitException) t;
+            if (t instanceof RuntimeException)
+                throw (RuntimeException) t;
+            if (t instanceof Error)
+                throw (Error) t;
+            throw new RuntimeException("Group commit failed: " + t.getMessage(), t);
+        }
+
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.persistence.jeeventstore;
+
+import javax.transaction.HeuristicMixedException;
+import javax.transaction.HeuristicRollbackException;
+import javax.transaction.NotSupportedException;
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.SystemException;
+import javax.transaction.UserTransaction;
+import org.jeecqrs.common.persistence.es.BatchTransaction;
+import org.jeecqrs.common.util.Validate;
+
+/**
+ * Spans the commits of a unit of work with a bean-managed JTA transaction.
+ */
+public class UserTransactionBatchTransaction implements BatchTransaction {
+
+    private final UserTransaction transaction;
+
+    public UserTransactionBatchTransaction(UserTransaction transaction) {
+        Validate.notNull(transaction, "transaction must not be null");
+        this.transaction = transaction;
+    }
+
+    @Override
+    public void begin() {
+        try {
+            transaction.begin();
+        } catch (NotSupportedException | SystemException e) {
+            throw new RuntimeException("Cannot begin transaction: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void commit() {
+        try {
+            transaction.commit();
+        } catch (RollbackException | HeuristicMixedException | HeuristicRollbackException
+                | SystemException e) {
+            throw new RuntimeException("Cannot commit transaction: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void rollback() {
+        try {
+            transaction.rollback();
+        } catch (SystemException e) {
+            throw new RuntimeException("Cannot roll back transaction: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean isActive() {
+        try {
+            return transaction.getStatus() != Status.STATUS_NO_TRANSACTION;
+        } catch (SystemException e) {
+            throw new RuntimeException("Cannot get transaction status: " + e.getMessage(), e);
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+package org.jeecqrs.common.persistence.jeeventstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.transaction.HeuristicMixedException;
+import javax.transaction.RollbackException;
+import javax.transaction.SystemException;
+import org.jeecqrs.common.event.AbstractEvent;
+import org.jeecqrs.common.event.Event;
+import org.jeeventstore.ConcurrencyException;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+public class GroupCommitterTest {
+
+    private static final String BUCKET = "bucket";
+    private static final List<Event> EVENTS = Collections.<Event>singletonList(new Appended());
+
+    private final TransactionalEventStore store = new TransactionalEventStore();
+    // waits until the group is complete, such that the commits of a test form one group
+    private final GroupCommitter committer = new GroupCommitter(store, store, 3, 10, TimeUnit.SECONDS);
+
+    @Test
+    public void testGroupIsWrittenInOneTransaction() throws Exception {
+        List<Throwable> failures = commitTogether(
+                createCommit("a", "a1"), createCommit("b", "b1"), createCommit("c", "c1"));
+        assertEquals(failures, Arrays.asList(null, null, null));
+        assertEquals(committer.groups(), 1);
+        assertEquals(committer.commits(), 3);
+        assertEquals(store.begun, 1);
+        assertEquals(store.committed, 1);
+        assertEquals(store.commitsOf("b"), Arrays.asList("b1"));
+    }
+
+    @Test
+    public void testConflictFailsOnlyThatCommit() throws Exception {
+        store.createStream(BUCKET, "s").commit("s0");
+        List<Throwable> failures = commitTogether(
+                createCommit("a", "a1"), appendCommit("s", 0, "s1"), createCommit("b", "b1"));
+        assertNull(failures.get(0));
+        assertTrue(failures.get(1) instanceof ConcurrencyException, String.valueOf(failures.get(1)));
+        assertNull(failures.get(2));
+        assertEquals(store.rolledBack, 1);
+        assertEquals(store.committed, 0, "the others are written outside of a shared transaction");
+        assertEquals(store.commitsOf("a"), Arrays.asList("a1"));
+        assertEquals(store.commitsOf("b"), Arrays.asList("b1"));
+        assertEquals(store.commitsOf("s"), Arrays.asList("s0"));
+    }
+
+    @Test
+    public void testConflictAfterStagedCommitsWritesOthersOnce() throws Exception {
+        store.createStream(BUCKET, "s").commit("s0");
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            // queue the commits one after the other, so the conflict comes last
+            Future<Void> a = submitQueued(executor, createCommit("a", "a1"), 1);
+            Future<Void> b = submitQueued(executor, createCommit("b", "b1"), 2);
+            Future<Void> s = executor.submit(appendCommit("s", 0, "s1"));
+            a.get(30, TimeUnit.SECONDS);
+            b.get(30, TimeUnit.SECONDS);
+            try {
+                s.get(30, TimeUnit.SECONDS);
+                fail("conflicting commit must fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ConcurrencyException, String.valueOf(e.getCause()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(committer.groups(), 1);
+        assertEquals(store.rolledBack, 1, "the staged commits must be rolled back");
+        assertEquals(store.commitsOf("a"), Arrays.asList("a1"));
+        assertEquals(store.commitsOf("b"), Arrays.asList("b1"));
+        assertEquals(store.commitsOf("s"), Arrays.asList("s0"));
+    }
+
+    @Test
+    public void testCallerTransactionBypassesGroup() throws Exception {
+        store.begin();
+        committer.commitNew(BUCKET, "a", EVENTS, "a1");
+        assertEquals(store.begun, 1, "the committer must not begin a transaction of its own");
+        assertEquals(committer.pendingCommits(), 0);
+        store.rollback();
+        assertTrue(store.commitsOf("a").isEmpty(), "the commit belongs to the caller's transaction");
+
+        store.begin();
+        committer.commitNew(BUCKET, "a", EVENTS, "a2");
+        store.commit();
+        assertEquals(store.commitsOf("a"), Arrays.asList("a2"));
+        assertEquals(committer.groups(), 2);
+    }
+
+    @Test
+    public void testRollbackOnlyTransactionIsWrittenIndividually() throws Exception {
+        store.failNextCommit(new RollbackException("marked rollback-only"));
+        List<Throwable> failures = commitTogether(
+                createCommit("a", "a1"), createCommit("b", "b1"), createCommit("c", "c1"));
+        assertEquals(failures, Arrays.asList(null, null, null));
+        assertEquals(store.begun, 1);
+        assertEquals(store.committed, 0);
+        for (String stream : Arrays.asList("a", "b", "c"))
+            assertEquals(store.commitsOf(stream), Arrays.asList(stream + "1"));
+    }
+
+    @Test
+    public void testHeuristicOutcomeFailsGroup() throws Exception {
+        assertGroupFailsOnCommit(new HeuristicMixedException("mixed"));
+    }
+
+    @Test
+    public void testUnknownOutcomeFailsGroup() throws Exception {
+        assertGroupFailsOnCommit(new SystemException("connection lost"));
+    }
+
+    private void assertGroupFailsOnCommit(Exception cause) throws Exception {
+        store.failNextCommit(cause);
+        List<Throwable> failures = commitTogether(
+                createCommit("a", "a1"), createCommit("b", "b1"), createCommit("c", "c1"));
+        for (Throwable failure : failures) {
+            assertTrue(failure instanceof RuntimeException, String.valueOf(failure));
+            assertSame(failure.getCause(), cause);
+        }
+        assertEquals(store.begun, 1);
+        // the commits may have been written, so they must not be written again
+        for (String stream : Arrays.asList("a", "b", "c"))
+            assertTrue(store.commitsOf(stream).isEmpty());
+    }
+
+    @Test
+    public void testConcurrentCallersInOneGroup() throws Exception {
+        store.createStream(BUCKET, "s").commit("s0");
+        List<Throwable> failures = commitTogether(
+                appendCommit("s", 1, "x1"), appendCommit("s", 1, "y1"), appendCommit("s", 1, "z1"));
+        int succeeded = 0;
+        for (Throwable failure : failures) {
+            if (failure == null)
+                succeeded++;
+            else
+                assertTrue(failure instanceof ConcurrencyException, String.valueOf(failure));
+        }
+        assertEquals(succeeded, 1);
+        assertEquals(store.commitsOf("s").size(), 2);
+        assertEquals(committer.groups(), 1);
+    }
+
+    @Test
+    public void testManyConcurrentCallers() throws Exception {
+        final GroupCommitter committer = new GroupCommitter(store, store, 8, 1, TimeUnit.MILLISECONDS);
+        List<Callable<Void>> writers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final String stream = "t" + t;
+            writers.add(() -> {
+                committer.commitNew(BUCKET, stream, EVENTS, stream + ":0");
+                for (int i = 1; i < 20; i++)
+                    committer.commit(BUCKET, stream, i, EVENTS, stream + ":" + i);
+                return null;
+            });
+        }
+        assertEquals(run(writers), Collections.nCopies(8, null));
+        for (int t = 0; t < 8; t++)
+            assertEquals(store.commitsOf("t" + t).size(), 20);
+        assertEquals(committer.commits(), 160);
+        assertTrue(committer.groups() < committer.commits(),
+                committer.groups() + " groups for " + committer.commits() + " commits");
+        assertEquals(store.rolledBack, 0);
+    }
+
+    private Callable<Void> createCommit(final String stream, final String commitId) {
+        return () -> {
+            committer.commitNew(BUCKET, stream, EVENTS, commitId);
+            return null;
+        };
+    }
+
+    private Callable<Void> appendCommit(final String stream, final long version, final String commitId) {
+        return () -> {
+            committer.commit(BUCKET, stream, version, EVENTS, commitId);
+            return null;
+        };
+    }
+
+    private Future<Void> submitQueued(ExecutorService executor, Callable<Void> commit, int queued)
+            throws InterruptedException {
+        Future<Void> future = executor.submit(commit);
+        while (committer.pendingCommits() < queued)
+            Thread.sleep(1);
+        return future;
+    }
+
+    @SafeVarargs
+    private static List<Throwable> commitTogether(Callable<Void>... commits) throws Exception {
+        return run(Arrays.asList(commits));
+    }
+
+    private static List<Throwable> run(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks)
+                futures.add(executor.submit(task));
+            List<Throwable> failures = new ArrayList<>();
+            for (Future<Void> f : futures) {
+                try {
+                    f.get(30, TimeUnit.SECONDS);
+                    failures.add(null);
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause());
+                }
+            }
+            return failures;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    static class Appended extends AbstractEvent<Appended> {
+    }
+
+}
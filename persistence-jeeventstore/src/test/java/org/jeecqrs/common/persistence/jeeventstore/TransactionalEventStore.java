@@ -0,0 +1,183 @@
+package org.jeecqrs.common.persistence.jeeventstore;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.jeecqrs.common.persistence.es.BatchTransaction;
+import org.jeeventstore.ConcurrencyException;
+import org.jeeventstore.DuplicateCommitException;
+import org.jeeventstore.EventStore;
+import org.jeeventstore.ReadableEventStream;
+import org.jeeventstore.StreamNotFoundException;
+import org.jeeventstore.WritableEventStream;
+
+/**
+ * An event store that keeps the commit ids per stream and whose writes
+ * within a transaction only become visible when the transaction commits.
+ * A stream's version is its number of commits.
+ */
+public class TransactionalEventStore implements EventStore, BatchTransaction {
+
+    private Map<String, List<String>> streams = new HashMap<>();
+    private Map<String, List<String>> staged;
+    private Thread owner;
+    private RuntimeException commitFailure;
+
+    int begun = 0;
+    int committed = 0;
+    int rolledBack = 0;
+
+    /**
+     * Makes the next transaction commit fail like
+     * {@link UserTransactionBatchTransaction} reports the given exception.
+     */
+    synchronized void failNextCommit(Exception cause) {
+        commitFailure = new RuntimeException("Cannot commit transaction: " + cause.getMessage(), cause);
+    }
+
+    synchronized List<String> commitsOf(String streamId) {
+        List<String> commits = streams.get(streamId);
+        return commits == null ? Collections.<String>emptyList() : new ArrayList<>(commits);
+    }
+
+    @Override
+    public synchronized void begin() {
+        if (staged != null)
+            throw new IllegalStateException("transaction already active");
+        staged = copy(streams);
+        owner = Thread.currentThread();
+        begun++;
+    }
+
+    @Override
+    public synchronized void commit() {
+        if (staged == null)
+            throw new IllegalStateException("no transaction");
+        RuntimeException failure = commitFailure;
+        commitFailure = null;
+        owner = null;
+        if (failure != null) {
+            staged = null;
+            throw failure;
+        }
+        streams = staged;
+        staged = null;
+        committed++;
+    }
+
+    @Override
+    public synchronized void rollback() {
+        if (staged == null)
+            throw new IllegalStateException("no transaction");
+        staged = null;
+        owner = null;
+        rolledBack++;
+    }
+
+    @Override
+    public synchronized boolean isActive() {
+        return owner == Thread.currentThread();
+    }
+
+    @Override
+    public synchronized boolean existsStream(String bucketId, String streamId) {
+        return view().containsKey(streamId);
+    }
+
+    @Override
+    public ReadableEventStream openStreamForReading(String bucketId, String streamId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ReadableEventStream openStreamForReading(String bucketId, String streamId, long version) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public WritableEventStream createStream(String bucketId, String streamId) {
+        return new Writer(bucketId, streamId, 0, true);
+    }
+
+    @Override
+    public synchronized WritableEventStream openStreamForWriting(String bucketId, String streamId, long version) {
+        if (!view().containsKey(streamId))
+            throw new StreamNotFoundException("Stream " + streamId + " not found");
+        return new Writer(bucketId, streamId, version, false);
+    }
+
+    private synchronized void write(String streamId, long version, boolean create, String commitId)
+            throws ConcurrencyException, DuplicateCommitException {
+        Map<String, List<String>> view = view();
+        for (List<String> commits : view.values())
+            if (commits.contains(commitId))
+                throw new DuplicateCommitException("Duplicate commit " + commitId);
+        List<String> commits = view.get(streamId);
+        if (create ? commits != null : commits.size() != version)
+            throw new ConcurrencyException("Stream " + streamId + " has been modified");
+        if (commits == null)
+            view.put(streamId, commits = new ArrayList<>());
+        commits.add(commitId);
+    }
+
+    private Map<String, List<String>> view() {
+        return staged != null ? staged : streams;
+    }
+
+    private static Map<String, List<String>> copy(Map<String, List<String>> streams) {
+        Map<String, List<String>> copy = new HashMap<>();
+        for (Map.Entry<String, List<String>> e : streams.entrySet())
+            copy.put(e.getKey(), new ArrayList<>(e.getValue()));
+        return copy;
+    }
+
+    private final class Writer implements WritableEventStream {
+
+        private final String bucketId;
+        private final String streamId;
+        private final long version;
+        private final boolean create;
+
+        Writer(String bucketId, String streamId, long version, boolean create) {
+            this.bucketId = bucketId;
+            this.streamId = streamId;
+            this.version = version;
+            this.create = create;
+        }
+
+        @Override
+        public String bucketId() {
+            return bucketId;
+        }
+
+        @Override
+        public String streamId() {
+            return streamId;
+        }
+
+        @Override
+        public long version() {
+            return version;
+        }
+
+        @Override
+        public Iterator<Serializable> events() {
+            return Collections.<Serializable>emptyList().iterator();
+        }
+
+        @Override
+        public void append(Serializable event) {
+        }
+
+        @Override
+        public void commit(String commitId) throws DuplicateCommitException, ConcurrencyException {
+            write(streamId, version, create, commitId);
+        }
+
+    }
+
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright (c) 2013 Red Rainbow IT Solutions GmbH, Germany
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.jeecqrs.common.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a reflection-free event dispatcher and, where possible, an
+ * event sourcing accessor for every concrete aggregate root and saga.
+ * <p>
+ * For a class {@code com.example.Outer.Inner}, the processor generates
+ * the top level class {@code com.example.Outer$Inner_EventSourcing}, which
+ * implements {@code ConventionDispatcher} with direct calls to the
+ * {@code when} event handler methods.  If the {@code @Load}, {@code @Store}
+ * and {@code @Version} methods are accessible from the generated class, it
+ * also implements {@code EventSourcingAccessor} with direct calls to them.
+ * If the default constructor is accessible, it implements
+ * {@code InstanceFactory} with a plain {@code new}.
+ * The runtime picks up the generated class automatically.
+ * <p>
+ * Handler methods are found like the runtime finds them, i.e., by the
+ * erasure of their parameter type, which includes handlers whose parameter
+ * type is a type variable.
+ * Classes whose handler methods cannot be called from the generated class,
+ * e.g., protected handlers inherited from a super class in another package,
+ * are skipped and keep using reflection.
+ */
+@SupportedAnnotationTypes("*")
+public class EventSourcingProcessor extends AbstractProcessor {
+
+    // must match org.jeecqrs.common.util.GeneratedClasses.SUFFIX
+    static final String SUFFIX = "_EventSourcing";
+
+    private static final String HANDLER_METHOD_NAME = "when";
+
+    private static final String[] TARGET_BASE_TYPES = new String[]{
+        "org.jeecqrs.common.domain.model.AbstractEventSourcedAggregateRoot",
+        "org.jeecqrs.common.sagas.AbstractSaga"
+    };
+    private static final String EVENT_TYPE = "org.jeecqrs.common.event.Event";
+    private static final String EVENT_SOURCING_BUS_TYPE = "org.jeecqrs.common.event.sourcing.EventSourcingBus";
+    private static final String DISPATCHER_TYPE = "org.jeecqrs.common.event.routing.convention.ConventionDispatcher";
+    private static final String ACCESSOR_TYPE = "org.jeecqrs.common.event.sourcing.EventSourcingAccessor";
+    private static final String FACTORY_TYPE = "org.jeecqrs.common.event.sourcing.InstanceFactory";
+    private static final String LOAD_ANNOTATION = "org.jeecqrs.common.event.sourcing.Load";
+    private static final String STORE_ANNOTATION = "org.jeecqrs.common.event.sourcing.Store";
+    private static final String VERSION_ANNOTATION = "org.jeecqrs.common.event.sourcing.Version";
+
+    private Elements elements;
+    private Types types;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        if (elements.getTypeElement(DISPATCHER_TYPE) == null)
+            return false; // jcommondomain-core not on the class path
+        for (Element e : roundEnv.getRootElements())
+            processElement(e);
+        // never claim any annotations
+        return false;
+    }
+
+    private void processElement(Element e) {
+        if (e.getKind() == ElementKind.CLASS && isTarget((TypeElement) e))
+            generate((TypeElement) e);
+        for (Element enclosed : e.getEnclosedElements())
+            if (enclosed.getKind().isClass() || enclosed.getKind().isInterface())
+                processElement(enclosed);
+    }
+
+    private boolean isTarget(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT))
+            return false;
+        TypeMirror erased = types.erasure(type.asType());
+        for (String name : TARGET_BASE_TYPES) {
+            TypeElement base = elements.getTypeElement(name);
+            if (base != null && types.isSubtype(erased, types.erasure(base.asType())))
+                return true;
+        }
+        return false;
+    }
+
+    private void generate(TypeElement type) {
+        String pkg = packageOf(type);
+        if (!isAccessibleType(type, pkg)) {
+            note(type, "not accessible from generated code, using reflection");
+            return;
+        }
+        List<ExecutableElement> handlers = findHandlers(type, pkg);
+        if (handlers == null)
+            return;
+        ExecutableElement load = findAnnotated(type, LOAD_ANNOTATION);
+        ExecutableElement store = findAnnotated(type, STORE_ANNOTATION);
+        ExecutableElement version = findAnnotated(type, VERSION_ANNOTATION);
+        boolean accessor = isLoadMethod(load, pkg) && isStoreMethod(store, pkg) && isVersionMethod(version, pkg);
+        boolean factory = hasAccessibleDefaultConstructor(type);
+
+        String simpleName = flatName(type, pkg) + SUFFIX;
+        String qualifiedName = pkg.isEmpty() ? simpleName : pkg + "." + simpleName;
+        String targetName = types.erasure(type.asType()).toString();
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+            try (PrintWriter out = new PrintWriter(file.openWriter())) {
+                if (!pkg.isEmpty()) {
+                    out.println("package " + pkg + ";");
+                    out.println();
+                }
+                out.println("/**");
+                out.println(" * Generated by " + getClass().getName() + " for {@link " + targetName + "}.");
+                out.println(" * Do not edit.");
+                out.println(" */");
+                out.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+                out.print("public final class " + simpleName + " implements " + DISPATCHER_TYPE);
+                if (accessor)
+                    out.print(", " + ACCESSOR_TYPE);
+                if (factory)
+                    out.print(", " + FACTORY_TYPE + "<" + targetName + ">");
+                out.println(" {");
+                out.println();
+                writeDispatcher(out, targetName, handlers);
+                if (accessor)
+                    writeAccessor(out, targetName, load, store, version);
+                if (factory)
+                    writeFactory(out, targetName);
+                out.println("}");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Cannot generate " + qualifiedName + ": " + e.getMessage(), type);
+        }
+    }
+
+    private void writeDispatcher(PrintWriter out, String targetName, List<ExecutableElement> handlers) {
+        out.println("    private static final Class<?>[] EVENT_TYPES = new Class<?>[]{");
+        for (int i = 0; i < handlers.size(); i++)
+            out.println("        " + parameterType(handlers.get(i), 0) + ".class"
+                    + (i < handlers.size() - 1 ? "," : ""));
+        out.println("    };");
+        out.println();
+        out.println("    @Override");
+        out.println("    public String methodName() {");
+        out.println("        return \"" + HANDLER_METHOD_NAME + "\";");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public Class<?>[] eventTypes() {");
+        out.println("        return EVENT_TYPES.clone();");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public Object dispatch(Object target, int handler, " + EVENT_TYPE + "<?> event) {");
+        out.println("        " + targetName + " t = (" + targetName + ") target;");
+        out.println("        switch (handler) {");
+        for (int i = 0; i < handlers.size(); i++) {
+            ExecutableElement m = handlers.get(i);
+            String call = receiver(m) + "." + HANDLER_METHOD_NAME + "((" + parameterType(m, 0) + ") event)";
+            out.println("            case " + i + ":");
+            if (m.getReturnType().getKind() == TypeKind.VOID) {
+                out.println("                " + call + ";");
+                out.println("                return null;");
+            } else {
+                out.println("                return " + call + ";");
+            }
+        }
+        out.println("            default:");
+        out.println("                throw new IllegalArgumentException(\"Unknown handler: \" + handler);");
+        out.println("        }");
+        out.println("    }");
+        out.println();
+    }
+
+    private void writeAccessor(PrintWriter out, String targetName,
+            ExecutableElement load, ExecutableElement store, ExecutableElement version) {
+        out.println("    @Override");
+        out.println("    public void load(Object obj, long version, java.util.Iterator<? extends " + EVENT_TYPE + "> events) {");
+        if (parameterType(load, 1).equals("java.util.List")) {
+            out.println("        java.util.List list = new java.util.ArrayList();");
+            out.println("        while (events.hasNext())");
+            out.println("            list.add(events.next());");
+            out.println("        ((" + targetName + ") obj)." + load.getSimpleName() + "(version, list);");
+        } else {
+            out.println("        ((" + targetName + ") obj)." + load.getSimpleName() + "(version, (java.util.Iterator) events);");
+        }
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public void store(Object obj, " + EVENT_SOURCING_BUS_TYPE + "<? extends " + EVENT_TYPE + "> bus) {");
+        out.println("        ((" + targetName + ") obj)." + store.getSimpleName() + "((" + EVENT_SOURCING_BUS_TYPE + ") bus);");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public long version(Object obj) {");
+        out.println("        return ((" + targetName + ") obj)." + version.getSimpleName() + "();");
+        out.println("    }");
+        out.println();
+    }
+
+    private void writeFactory(PrintWriter out, String targetName) {
+        out.println("    @Override");
+        out.println("    public " + targetName + " newInstance() {");
+        out.println("        return new " + targetName + "();");
+        out.println("    }");
+        out.println();
+    }
+
+    /**
+     * Collects the handler methods like the runtime does: the first method
+     * for an event type found when walking up the class hierarchy wins.
+     * Returns null if any handler cannot be called from the generated class.
+     */
+    private List<ExecutableElement> findHandlers(TypeElement type, String pkg) {
+        List<ExecutableElement> handlers = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (TypeElement t = type; t != null; t = superclassOf(t)) {
+            for (ExecutableElement m : ElementFilter.methodsIn(t.getEnclosedElements())) {
+                if (!isHandlerCandidate(m) || !seen.add(parameterType(m, 0)))
+                    continue;
+                Set<Modifier> mods = m.getModifiers();
+                if (!mods.contains(Modifier.PUBLIC) && !mods.contains(Modifier.PROTECTED)) {
+                    // hidden handlers are resolved at runtime
+                    note(type, "has non-public handler " + m + " in " + t + ", using reflection");
+                    return null;
+                }
+                TypeElement eventType = (TypeElement) types.asElement(
+                        types.erasure(m.getParameters().get(0).asType()));
+                if (!isAccessibleMethod(m, t, pkg) || !isAccessibleType(eventType, pkg)
+                        || (isGeneric(m) && !isAccessibleType(t, pkg))) {
+                    note(type, "handler " + m + " in " + t + " is not accessible, using reflection");
+                    return null;
+                }
+                handlers.add(m);
+            }
+        }
+        return handlers;
+    }
+
+    private boolean isHandlerCandidate(ExecutableElement m) {
+        if (!m.getSimpleName().contentEquals(HANDLER_METHOD_NAME) || m.getParameters().size() != 1)
+            return false;
+        TypeMirror param = m.getParameters().get(0).asType();
+        TypeElement event = elements.getTypeElement(EVENT_TYPE);
+        // like Class.getParameterTypes() at runtime, look at the erasure only
+        return types.isSubtype(types.erasure(param), types.erasure(event.asType()));
+    }
+
+    private boolean isGeneric(ExecutableElement handler) {
+        return handler.getParameters().get(0).asType().getKind() == TypeKind.TYPEVAR;
+    }
+
+    /**
+     * Handlers whose parameter is a type variable are called through the
+     * raw declaring class, such that the call binds to the erased method
+     * just like the reflective call at runtime, whatever the type argument
+     * of the target class is.
+     */
+    private String receiver(ExecutableElement handler) {
+        if (!isGeneric(handler))
+            return "t";
+        return "((" + types.erasure(handler.getEnclosingElement().asType()) + ") t)";
+    }
+
+    private ExecutableElement findAnnotated(TypeElement type, String annotation) {
+        for (TypeElement t = type; t != null; t = superclassOf(t))
+            for (ExecutableElement m : ElementFilter.methodsIn(t.getEnclosedElements()))
+                for (AnnotationMirror am : m.getAnnotationMirrors())
+                    if (((TypeElement) am.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation))
+                        return m;
+        return null;
+    }
+
+    private boolean isLoadMethod(ExecutableElement m, String pkg) {
+        return m != null && isAccessibleMethod(m, (TypeElement) m.getEnclosingElement(), pkg)
+                && m.getParameters().size() == 2
+                && m.getParameters().get(0).asType().getKind() == TypeKind.LONG
+                && (parameterType(m, 1).equals("java.util.Iterator")
+                    || parameterType(m, 1).equals("java.util.List"));
+    }
+
+    private boolean isStoreMethod(ExecutableElement m, String pkg) {
+        return m != null && isAccessibleMethod(m, (TypeElement) m.getEnclosingElement(), pkg)
+                && m.getParameters().size() == 1
+                && parameterType(m, 0).equals(EVENT_SOURCING_BUS_TYPE);
+    }
+
+    private boolean isVersionMethod(ExecutableElement m, String pkg) {
+        return m != null && isAccessibleMethod(m, (TypeElement) m.getEnclosingElement(), pkg)
+                && m.getParameters().isEmpty()
+                && m.getReturnType().getKind() == TypeKind.LONG;
+    }
+
+    private boolean hasAccessibleDefaultConstructor(TypeElement type) {
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC))
+            return false; // inner classes need an enclosing instance
+        for (ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements()))
+            if (c.getParameters().isEmpty())
+                return !c.getModifiers().contains(Modifier.PRIVATE);
+        return false;
+    }
+
+    private boolean isAccessibleMethod(ExecutableElement m, TypeElement declaring, String pkg) {
+        Set<Modifier> mods = m.getModifiers();
+        if (mods.contains(Modifier.PRIVATE))
+            return false;
+        if (!packageOf(declaring).equals(pkg))
+            return mods.contains(Modifier.PUBLIC) && isAccessibleType(declaring, pkg);
+        return true;
+    }
+
+    private boolean isAccessibleType(TypeElement type, String pkg) {
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            Set<Modifier> mods = e.getModifiers();
+            if (mods.contains(Modifier.PRIVATE))
+                return false;
+            if (!mods.contains(Modifier.PUBLIC) && !packageOf(e).equals(pkg))
+                return false;
+        }
+        return true;
+    }
+
+    private TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED)
+            return null;
+        return (TypeElement) ((DeclaredType) superclass).asElement();
+    }
+
+    private String parameterType(ExecutableElement m, int index) {
+        return types.erasure(m.getParameters().get(index).asType()).toString();
+    }
+
+    private String packageOf(Element e) {
+        PackageElement pkg = elements.getPackageOf(e);
+        return pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+    }
+
+    /**
+     * Gets the binary name without the package, e.g., {@code Outer$Inner},
+     * which is unique within the package.
+     */
+    private String flatName(TypeElement type, String pkg) {
+        String binary = elements.getBinaryName(type).toString();
+        return pkg.isEmpty() ? binary : binary.substring(pkg.length() + 1);
+    }
+
+    private void note(TypeElement type, String msg) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                type.getQualifiedName() + " " + msg, type);
+    }
+
+}
@@ -0,0 +1,324 @@
+package org.jeecqrs.common.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.jeecqrs.common.event.Event;
+import org.jeecqrs.common.event.routing.convention.ConventionDispatchTable;
+import org.jeecqrs.common.event.routing.convention.ConventionDispatcher;
+import org.jeecqrs.common.event.sourcing.EventSourcingAccessor;
+import org.jeecqrs.common.event.sourcing.EventSourcingBus;
+import org.jeecqrs.common.event.sourcing.InstanceFactory;
+import org.jeecqrs.common.util.GeneratedClasses;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Compiles fixture classes with the processor and checks the generated code.
+ */
+public class EventSourcingProcessorTest {
+
+    private static final String EVENTS = source(
+            "package fixtures;",
+            "public class Events {",
+            "    public static class Opened extends org.jeecqrs.common.domain.model.AbstractDomainEvent<Opened> { }",
+            "    public static class Deposited extends org.jeecqrs.common.domain.model.AbstractDomainEvent<Deposited> { }",
+            "    public static class Closed extends org.jeecqrs.common.domain.model.AbstractDomainEvent<Closed> { }",
+            "}");
+
+    private static final String ACCOUNT = source(
+            "package fixtures;",
+            "import fixtures.Events.*;",
+            "public class Account extends org.jeecqrs.common.domain.model.AbstractEventSourcedAggregateRoot {",
+            "    public org.jeecqrs.common.Identity id() { return null; }",
+            "    protected String when(Opened e) { return \"Account.Opened\"; }",
+            "    protected void when(Deposited e) { }",
+            "    public static class Inner extends Account {",
+            "        protected String when(Opened e) { return \"Inner.Opened\"; }",
+            "    }",
+            "}");
+
+    // flattening the name of Account.Inner must not collide with this class
+    private static final String ACCOUNT_INNER = source(
+            "package fixtures;",
+            "import fixtures.Events.*;",
+            "public class Account_Inner extends org.jeecqrs.common.domain.model.AbstractEventSourcedAggregateRoot {",
+            "    public org.jeecqrs.common.Identity id() { return null; }",
+            "    protected String when(Closed e) { return \"Account_Inner.Closed\"; }",
+            "}");
+
+    private static final String GENERIC_BASE = source(
+            "package fixtures;",
+            "public abstract class GenericBase<E extends org.jeecqrs.common.domain.model.DomainEvent>",
+            "        extends org.jeecqrs.common.domain.model.AbstractEventSourcedAggregateRoot {",
+            "    public org.jeecqrs.common.Identity id() { return null; }",
+            "    protected String when(E e) { return \"GenericBase.E\"; }",
+            "}");
+
+    private static final String TYPED = source(
+            "package fixtures;",
+            "import fixtures.Events.*;",
+            "public class Typed extends GenericBase<Opened> {",
+            "    protected String when(Deposited e) { return \"Typed.Deposited\"; }",
+            "    protected <C extends Closed> String when(C e) { return \"Typed.C\"; }",
+            "}");
+
+    private static final String ACCESSIBLE = source(
+            "package fixtures;",
+            "import fixtures.Events.*;",
+            "import org.jeecqrs.common.event.sourcing.*;",
+            "public class Accessible extends org.jeecqrs.common.domain.model.AbstractEventSourcedAggregateRoot {",
+            "    long version;",
+            "    int loaded;",
+            "    public org.jeecqrs.common.Identity id() { return null; }",
+            "    protected void when(Opened e) { }",
+            "    @Load void load(long version, java.util.List<Opened> events) {",
+            "        this.version = version;",
+            "        this.loaded = events.size();",
+            "    }",
+            "    @Store void store(EventSourcingBus<Opened> bus) { bus.store(new Opened()); }",
+            "    @Version long version() { return version; }",
+            "}");
+
+    private static final String HIDDEN = source(
+            "package fixtures;",
+            "import fixtures.Events.*;",
+            "public class Hidden extends org.jeecqrs.common.domain.model.AbstractEventSourcedAggregateRoot {",
+            "    private Hidden() { }",
+            "    public org.jeecqrs.common.Identity id() { return null; }",
+            "    void when(Opened e) { }",
+            "}");
+
+    @Test
+    public void testDispatcherIsGenerated() throws Exception {
+        Compilation c = compile();
+        String generated = c.generatedSource("fixtures.Account_EventSourcing");
+        assertTrue(generated.contains("public final class Account_EventSourcing implements "
+                + ConventionDispatcher.class.getName()), generated);
+        assertTrue(generated.contains("fixtures.Events.Opened.class"), generated);
+        assertTrue(generated.contains("fixtures.Events.Deposited.class"), generated);
+
+        Class<?> account = c.load("fixtures.Account");
+        ConventionDispatcher dispatcher = GeneratedClasses.instanceFor(account, ConventionDispatcher.class);
+        assertNotNull(dispatcher);
+        assertEquals(dispatcher.methodName(), "when");
+        assertEquals(dispatcher.eventTypes().length, 2);
+
+        Object obj = newInstance(account);
+        ConventionDispatchTable table = ConventionDispatchTable.forClass(account, "when");
+        ConventionDispatchTable.Handler h = table.handlerFor(c.load("fixtures.Events$Opened"));
+        assertNull(h.method(), "generated dispatcher must be used");
+        assertEquals(h.invoke(obj, event(c, "Opened")), "Account.Opened");
+        assertNull(table.handlerFor(c.load("fixtures.Events$Deposited")).invoke(obj, event(c, "Deposited")));
+    }
+
+    @Test
+    public void testNestedClassNamesDoNotCollide() throws Exception {
+        Compilation c = compile();
+        assertTrue(c.generatedSource("fixtures.Account$Inner_EventSourcing")
+                .contains("public final class Account$Inner_EventSourcing "));
+        assertTrue(c.generatedSource("fixtures.Account_Inner_EventSourcing")
+                .contains("public final class Account_Inner_EventSourcing "));
+
+        Class<?> inner = c.load("fixtures.Account$Inner");
+        assertEquals(GeneratedClasses.generatedClassName(inner), "fixtures.Account$Inner_EventSourcing");
+        ConventionDispatchTable table = ConventionDispatchTable.forClass(inner, "when");
+        ConventionDispatchTable.Handler h = table.handlerFor(c.load("fixtures.Events$Opened"));
+        assertNull(h.method());
+        assertEquals(h.invoke(newInstance(inner), event(c, "Opened")), "Inner.Opened");
+
+        Class<?> flat = c.load("fixtures.Account_Inner");
+        table = ConventionDispatchTable.forClass(flat, "when");
+        h = table.handlerFor(c.load("fixtures.Events$Closed"));
+        assertNull(h.method());
+        assertEquals(h.invoke(newInstance(flat), event(c, "Closed")), "Account_Inner.Closed");
+    }
+
+    @Test
+    public void testTypeVariableHandlersAgreeWithRuntime() throws Exception {
+        Compilation c = compile();
+        String generated = c.generatedSource("fixtures.Typed_EventSourcing");
+        assertTrue(generated.contains("((fixtures.GenericBase) t).when("), generated);
+
+        Class<?> typed = c.load("fixtures.Typed");
+        ConventionDispatcher dispatcher = GeneratedClasses.instanceFor(typed, ConventionDispatcher.class);
+        ConventionDispatchTable table = ConventionDispatchTable.forClass(typed, "when");
+        assertEquals(new HashSet<>(Arrays.asList(dispatcher.eventTypes())), table.handledEventTypes());
+        assertEquals(table.handledEventTypes().size(), 3);
+
+        Object obj = newInstance(typed);
+        for (String[] expected : new String[][]{
+                {"Opened", "GenericBase.E"}, {"Deposited", "Typed.Deposited"}, {"Closed", "Typed.C"}}) {
+            ConventionDispatchTable.Handler h = table.handlerFor(c.load("fixtures.Events$" + expected[0]));
+            assertNull(h.method(), "generated dispatcher must be used for " + expected[0]);
+            assertEquals(h.invoke(obj, event(c, expected[0])), expected[1]);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAccessorAndFactoryAreGenerated() throws Exception {
+        Compilation c = compile();
+        Class<?> accessible = c.load("fixtures.Accessible");
+        EventSourcingAccessor accessor = GeneratedClasses.instanceFor(accessible, EventSourcingAccessor.class);
+        assertNotNull(accessor);
+        InstanceFactory<?> factory = GeneratedClasses.instanceFor(accessible, InstanceFactory.class);
+        assertNotNull(factory);
+
+        Object obj = factory.newInstance();
+        assertSame(obj.getClass(), accessible);
+        List<Event> events = new ArrayList<>();
+        events.add(event(c, "Opened"));
+        events.add(event(c, "Opened"));
+        accessor.load(obj, 7, events.iterator());
+        assertEquals(accessor.version(obj), 7l);
+        Field loaded = accessible.getDeclaredField("loaded");
+        loaded.setAccessible(true);
+        assertEquals(loaded.getInt(obj), 2);
+        final List<Event> stored = new ArrayList<>();
+        accessor.store(obj, new EventSourcingBus<Event>() {
+            @Override
+            public void store(Event event) {
+                stored.add(event);
+            }
+            @Override
+            public void commit(String commitId) {
+            }
+        });
+        assertEquals(stored.size(), 1);
+
+        // the @Load method of the aggregate root base class is private
+        Class<?> account = c.load("fixtures.Account");
+        assertNull(GeneratedClasses.instanceFor(account, EventSourcingAccessor.class));
+        assertNotNull(GeneratedClasses.instanceFor(account, InstanceFactory.class));
+    }
+
+    @Test
+    public void testHiddenHandlersAreLeftToReflection() throws Exception {
+        Compilation c = compile();
+        assertFalse(c.isGenerated("fixtures.Hidden_EventSourcing"));
+        assertTrue(c.hasNote("fixtures.Hidden has non-public handler"), c.diagnostics.toString());
+    }
+
+    private static Object newInstance(Class<?> type) throws Exception {
+        return type.getDeclaredConstructor().newInstance();
+    }
+
+    private static Event event(Compilation c, String name) throws Exception {
+        return (Event) newInstance(c.load("fixtures.Events$" + name));
+    }
+
+    private static String source(String... lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines)
+            sb.append(line).append('\n');
+        return sb.toString();
+    }
+
+    private static Compilation compile() throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull(compiler, "tests must run on a JDK");
+        File out = Files.createTempDirectory("processor-test").toFile();
+        File classes = new File(out, "classes");
+        File sources = new File(out, "generated");
+        assertTrue(classes.mkdir() && sources.mkdir());
+
+        List<JavaFileObject> units = new ArrayList<>();
+        units.add(new Source("fixtures.Events", EVENTS));
+        units.add(new Source("fixtures.Account", ACCOUNT));
+        units.add(new Source("fixtures.Account_Inner", ACCOUNT_INNER));
+        units.add(new Source("fixtures.GenericBase", GENERIC_BASE));
+        units.add(new Source("fixtures.Typed", TYPED));
+        units.add(new Source("fixtures.Accessible", ACCESSIBLE));
+        units.add(new Source("fixtures.Hidden", HIDDEN));
+
+        String classPath = System.getProperty("java.class.path") + File.pathSeparator
+                + new File(codeSourceOf(ConventionDispatcher.class)).getPath();
+        List<String> options = Arrays.asList("-classpath", classPath,
+                "-d", classes.getPath(), "-s", sources.getPath());
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fm = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fm, diagnostics, options, null, units);
+            task.setProcessors(Collections.singletonList(new EventSourcingProcessor()));
+            boolean success = task.call();
+            assertTrue(success, diagnostics.getDiagnostics().toString());
+        }
+        return new Compilation(classes, sources, diagnostics.getDiagnostics());
+    }
+
+    private static URI codeSourceOf(Class<?> type) {
+        try {
+            return type.getProtectionDomain().getCodeSource().getLocation().toURI();
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot locate " + type, e);
+        }
+    }
+
+    private static final class Source extends SimpleJavaFileObject {
+        private final String code;
+        Source(String className, String code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    private static final class Compilation {
+        private final File sources;
+        private final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+        private final ClassLoader loader;
+
+        Compilation(File classes, File sources, List<Diagnostic<? extends JavaFileObject>> diagnostics)
+                throws IOException {
+            this.sources = sources;
+            this.diagnostics = diagnostics;
+            this.loader = new URLClassLoader(new URL[]{ classes.toURI().toURL() },
+                    EventSourcingProcessorTest.class.getClassLoader());
+        }
+
+        File sourceFile(String className) {
+            return new File(sources, className.replace('.', File.separatorChar) + ".java");
+        }
+
+        boolean isGenerated(String className) {
+            return sourceFile(className).isFile();
+        }
+
+        String generatedSource(String className) throws IOException {
+            assertTrue(isGenerated(className), className + " has not been generated");
+            return new String(Files.readAllBytes(sourceFile(className).toPath()), StandardCharsets.UTF_8);
+        }
+
+        Class<?> load(String className) throws ClassNotFoundException {
+            return Class.forName(className, true, loader);
+        }
+
+        boolean hasNote(String prefix) {
+            for (Diagnostic<? extends JavaFileObject> d : diagnostics)
+                if (d.getKind() == Diagnostic.Kind.NOTE && d.getMessage(null).startsWith(prefix))
+                    return true;
+            return false;
+        }
+    }
+
+}